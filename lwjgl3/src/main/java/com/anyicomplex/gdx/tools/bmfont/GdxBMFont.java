@@ -37,7 +37,7 @@ import static com.anyicomplex.gdx.tools.bmfont.BitmapFontPacker.Utils.*;
         description = "Generate BitmapFont from FreeType supported font file.")
 public class GdxBMFont implements Callable<Integer> {
 
-    @CommandLine.Parameters(index = "0", description = "The FreeType supported font file.")
+    @CommandLine.Parameters(index = "0", description = "The FreeType supported font file, or the shard file or dir with --merge-shards.")
     private File inputFile;
     @CommandLine.Parameters(index = "1", description = "The BitmapFont output directory.")
     private File outputDir;
@@ -48,6 +48,13 @@ public class GdxBMFont implements Callable<Integer> {
     private IntIntWrapper pageSize;
     @CommandLine.Option(names = {"-F", "--fnt-format"}, paramLabel = "<txt|xml>", description = "The output .fnt file format.")
     private FntFormatWrapper fntFormat;
+    @CommandLine.Option(names = "--page-format", paramLabel = "<png|ktx|etc1|eacR11>",
+            description = "The output glyph page file format. etc1 and eacR11 are GPU-compressed KTX files keeping only the glyph alpha. " +
+                    "Mip maps are written to KTX pages when --gen-mipmaps is set.")
+    private PageFormatWrapper pageFormat;
+    @CommandLine.Option(names = "--page-quantization", paramLabel = "<none|rgba4444>",
+            description = "Dither the png or ktx glyph pages to 4 bits per channel, ktx pages are written as RGBA4444.")
+    private PageQuantizationWrapper pageQuantization;
     @CommandLine.Option(names = {"-f", "--font-size"}, defaultValue = "16", showDefaultValue = CommandLine.Help.Visibility.NEVER,
             description = "The BitmapFont size in pixels.")
     private int size;
@@ -92,9 +99,36 @@ public class GdxBMFont implements Callable<Integer> {
     private String characters;
     @CommandLine.Option(names = "--characters-files", paramLabel = "<charactersFile|charactersDir>", arity = "1..*", description = "The characters files and dirs will be read recursively.")
     private File[] charactersFiles;
+    @CommandLine.Option(names = "--fallback-fonts", paramLabel = "<fallbackFont>", arity = "1..*",
+            description = "The FreeType supported fallback font files in order, characters not covered by the input font " +
+                    "are rendered from the first one covering them into the same pages.")
+    private File[] fallbackFonts;
+    @CommandLine.Option(names = "--placement", paramLabel = "<none|block|script|priority>",
+            description = "Glyph placement policy. block and script group related glyphs on the same pages, " +
+                    "priority places the placement priority characters first.")
+    private PlacementWrapper placement;
+    @CommandLine.Option(names = "--placement-priority-files", paramLabel = "<priorityFile|priorityDir>", arity = "1..*",
+            description = "The characters placed first by the priority placement policy, in order of appearance. Files and dirs will be read recursively.")
+    private File[] placementPriorityFiles;
+    @CommandLine.Option(names = "--page-index", defaultValue = "false", showDefaultValue = CommandLine.Help.Visibility.NEVER,
+            description = "Whether to write a .pages file listing the codepoint ranges of every glyph page.")
+    private boolean pageIndex;
+    @CommandLine.Option(names = "--page-array", defaultValue = "false", showDefaultValue = CommandLine.Help.Visibility.NEVER,
+            description = "Whether to write all glyph pages as the layers of one texture array file, a KTX 2D array or " +
+                    "a png of the pages stacked vertically, the .fnt page ids being the layer indices.")
+    private boolean pageArray;
+    @CommandLine.Option(names = "--archive", defaultValue = "false", showDefaultValue = CommandLine.Help.Visibility.NEVER,
+            description = "Whether to bundle the .fnt file and the glyph pages into one uncompressed, indexed .zip archive.")
+    private boolean archive;
     @CommandLine.Option(names = {"-k", "--kerning"}, defaultValue = "true", showDefaultValue = CommandLine.Help.Visibility.NEVER,
             description = "Whether the font should include kerning.")
     private boolean kerning;
+    @CommandLine.Option(names = "--kerning-threshold", paramLabel = "<pixels>",
+            description = "Drop the kerning pairs with a smaller magnitude in pixels.")
+    private int kerningThreshold;
+    @CommandLine.Option(names = "--kerning-corpus", defaultValue = "false", showDefaultValue = CommandLine.Help.Visibility.NEVER,
+            description = "Only keep the kerning pairs occurring as adjacent characters in the characters and characters files.")
+    private boolean kerningCorpus;
     @CommandLine.Option(names = "--flip", defaultValue = "false", showDefaultValue = CommandLine.Help.Visibility.NEVER,
             description = "Whether to flip the font vertically.")
     private boolean flip;
@@ -109,12 +143,26 @@ public class GdxBMFont implements Callable<Integer> {
     private Texture.TextureFilter magFilter;
     @CommandLine.Option(names = {"-i", "--incremental"}, description = "When true, glyphs are rendered on the fly to the font's glyph page textures as they are needed.")
     private boolean incremental;
+    @CommandLine.Option(names = "--shard", paramLabel = "<shardIndex,shardCount>",
+            description = "Only rasterize one shard of the characters into <name>_<shardIndex>.shard in the output directory, " +
+                    "so the shards can be generated by several processes, then merged with --merge-shards.")
+    private IntIntWrapper shard;
+    @CommandLine.Option(names = "--merge-shards", defaultValue = "false", showDefaultValue = CommandLine.Help.Visibility.NEVER,
+            description = "Pack the glyphs of all .shard files of the input (a shard file or a dir) into the BitmapFont.")
+    private boolean mergeShards;
+    @CommandLine.Option(names = "--plan", defaultValue = "false", showDefaultValue = CommandLine.Help.Visibility.NEVER,
+            description = "Only print the estimated page count, memory and time of the run, from the glyph metrics " +
+                    "and a small sample render, without writing any file. Cannot be combined with --shard or --merge-shards.")
+    private boolean plan;
     @CommandLine.Option(names = {"-o", "--override"}, defaultValue = "false",
             description = "Whether override exist file")
     private boolean override;
     @CommandLine.Option(names = "--charset", description = "The charset will be used to parse characters files.")
     private Charset charset;
 
+    @CommandLine.Spec
+    private CommandLine.Model.CommandSpec spec;
+
     @CommandLine.Option(names = {"-v", "--verbose"}, defaultValue = "false", description = "Enable verbose output.")
     private static volatile boolean VERBOSE;
     public static final String TAG = "GdxBMFont";
@@ -134,6 +182,9 @@ public class GdxBMFont implements Callable<Integer> {
                         .registerConverter(IntIntWrapper.class, new IntIntWrapperConverter())
                         .registerConverter(IntIntIntIntWrapper.class, new IntIntIntIntWrapperConverter())
                         .registerConverter(FntFormatWrapper.class, new FntFormatConverter())
+                        .registerConverter(PageFormatWrapper.class, new PageFormatConverter())
+                        .registerConverter(PlacementWrapper.class, new PlacementConverter())
+                        .registerConverter(PageQuantizationWrapper.class, new PageQuantizationConverter())
                         .registerConverter(Color.class, new ColorConverter())
                         .registerConverter(FreeTypeFontGenerator.Hinting.class, new HintingConverter())
                         .registerConverter(Texture.TextureFilter.class, new TextureFilterConverter())
@@ -145,6 +196,8 @@ public class GdxBMFont implements Callable<Integer> {
 
     @Override
     public Integer call() throws Exception {
+        if (plan && (shard != null || mergeShards))
+            throw new CommandLine.ParameterException(spec.commandLine(), "--plan cannot be combined with --shard or --merge-shards.");
         verbose("Generating BitmapFontPacker config...");
         BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
         if (pageSize != null) {
@@ -155,16 +208,29 @@ public class GdxBMFont implements Callable<Integer> {
         config.borderGamma = borderGamma;
         config.borderStraight = borderStraight;
         if (stringNotEmpty(characters)) config.characters = characters;
+        String corpus = stringNotEmpty(characters) ? characters : "";
         if (charactersFiles != null) {
             verbose("Parsing characters files...");
-            FileHandle[] files = new FileHandle[charactersFiles.length];
-            for (int i = 0; i < files.length; i ++) {
-                files[i] = Gdx.files.absolute(charactersFiles[i].getAbsolutePath());
-            }
-            config.characters = removeDuplicateChars(config.characters + readCharsFromFiles(charset == null ? null : charset.name(), files));
+            String text = readTextFromFiles(charset == null ? null : charset.name(), fileHandles(charactersFiles));
+            config.characters = removeDuplicateChars(config.characters + text);
+            corpus += "\n" + text;
             verbose("Characters files parsed successfully.");
         }
+        if (kerningCorpus) config.kerningCorpus = corpus;
+        config.kerningThreshold = kerningThreshold;
+        if (fallbackFonts != null) config.fallbackFonts = fileHandles(fallbackFonts);
+        if (placement != null) config.placement = placement.placement;
+        if (placementPriorityFiles != null) {
+            verbose("Parsing placement priority files...");
+            config.placementPriority = readCharsFromFiles(charset == null ? null : charset.name(), fileHandles(placementPriorityFiles));
+            verbose("Placement priority files parsed successfully.");
+        }
+        config.pageIndex = pageIndex;
+        config.pageArray = pageArray;
+        config.archive = archive;
         if (fntFormat != null) config.fntFormat = fntFormat.format;
+        if (pageFormat != null) config.pageFormat = pageFormat.format;
+        if (pageQuantization != null) config.pageQuantization = pageQuantization.quantization;
         config.flip = flip;
         config.gamma = gamma;
         config.incremental = incremental;
@@ -197,7 +263,23 @@ public class GdxBMFont implements Callable<Integer> {
         BitmapFontPacker.VERBOSE = VERBOSE;
         verbose("BitmapFontPacker config generated successfully.");
         verbose("Processing BitmapFontPacker...");
-        int result = BitmapFontPacker.process(Gdx.files.absolute(inputFile.getAbsolutePath()), Gdx.files.absolute(outputDir.getAbsolutePath()), config, override);
+        FileHandle input = Gdx.files.absolute(inputFile.getAbsolutePath());
+        FileHandle output = Gdx.files.absolute(outputDir.getAbsolutePath());
+        if (plan) {
+            System.out.println(BitmapFontPacker.plan(input, config));
+            return BitmapFontPacker.ExitCode.SUCCESS;
+        }
+        int result;
+        if (mergeShards) {
+            FileHandle[] shardFiles = input.isDirectory() ? input.list(".shard") : new FileHandle[] { input };
+            result = BitmapFontPacker.mergeShards(shardFiles, output, config, override);
+        }
+        else if (shard != null) {
+            String shardName = stringNotEmpty(config.name) ? config.name : input.nameWithoutExtension();
+            if (!output.exists()) output.mkdirs();
+            result = BitmapFontPacker.processShard(input, output.child(shardName + "_" + shard.arg0 + ".shard"), config, shard.arg0, shard.arg1, override);
+        }
+        else result = BitmapFontPacker.process(input, output, config, override);
         if (result != BitmapFontPacker.ExitCode.SUCCESS) {
             error("BitmapFontPacker processed failed with exit code " + result + ".");
             return result;
@@ -206,6 +288,14 @@ public class GdxBMFont implements Callable<Integer> {
         return result;
     }
 
+    private static FileHandle[] fileHandles(File[] files) {
+        FileHandle[] handles = new FileHandle[files.length];
+        for (int i = 0; i < handles.length; i ++) {
+            handles[i] = Gdx.files.absolute(files[i].getAbsolutePath());
+        }
+        return handles;
+    }
+
     private static class IntIntWrapper {
         int arg0, arg1;
         public IntIntWrapper(int arg0, int arg1) {
@@ -231,6 +321,27 @@ public class GdxBMFont implements Callable<Integer> {
         }
     }
 
+    private static class PageFormatWrapper {
+        String format;
+        public PageFormatWrapper(String format) {
+            this.format = format;
+        }
+    }
+
+    private static class PlacementWrapper {
+        String placement;
+        public PlacementWrapper(String placement) {
+            this.placement = placement;
+        }
+    }
+
+    private static class PageQuantizationWrapper {
+        String quantization;
+        public PageQuantizationWrapper(String quantization) {
+            this.quantization = quantization;
+        }
+    }
+
     private static class IntIntWrapperConverter implements CommandLine.ITypeConverter<IntIntWrapper> {
         @Override
         public IntIntWrapper convert(String value) throws Exception {
@@ -260,6 +371,36 @@ public class GdxBMFont implements Callable<Integer> {
         }
     }
 
+    private static class PageFormatConverter implements CommandLine.ITypeConverter<PageFormatWrapper> {
+        @Override
+        public PageFormatWrapper convert(String value) throws Exception {
+            for (String format : new String[] {"png", "ktx", "etc1", "eacR11"}) {
+                if (format.equalsIgnoreCase(value)) return new PageFormatWrapper(format);
+            }
+            throw new CommandLine.TypeConversionException("Parameter type mismatch!");
+        }
+    }
+
+    private static class PlacementConverter implements CommandLine.ITypeConverter<PlacementWrapper> {
+        @Override
+        public PlacementWrapper convert(String value) throws Exception {
+            for (String placement : new String[] {"none", "block", "script", "priority"}) {
+                if (placement.equalsIgnoreCase(value)) return new PlacementWrapper(placement);
+            }
+            throw new CommandLine.TypeConversionException("Parameter type mismatch!");
+        }
+    }
+
+    private static class PageQuantizationConverter implements CommandLine.ITypeConverter<PageQuantizationWrapper> {
+        @Override
+        public PageQuantizationWrapper convert(String value) throws Exception {
+            for (String quantization : new String[] {"none", "rgba4444"}) {
+                if (quantization.equalsIgnoreCase(value)) return new PageQuantizationWrapper(quantization);
+            }
+            throw new CommandLine.TypeConversionException("Parameter type mismatch!");
+        }
+    }
+
     private static class ColorConverter implements CommandLine.ITypeConverter<Color> {
         @Override
         public Color convert(String value) throws Exception {
@@ -31,6 +31,11 @@ class Lwjgl3PlatformSupport implements BitmapFontPacker.PlatformSupport {
         else System.out.println("[" + tag + "] " + message);
     }
 
+    @Override
+    public void info(String tag, String message) {
+        verbose(tag, message);
+    }
+
     @Override
     public void error(String tag, String message) {
         if (tag == null) {
@@ -24,18 +24,25 @@ import com.badlogic.gdx.graphics.PixmapIO;
 import com.badlogic.gdx.graphics.Texture;
 import com.badlogic.gdx.graphics.g2d.BitmapFont;
 import com.badlogic.gdx.graphics.g2d.PixmapPacker;
-import com.badlogic.gdx.graphics.g2d.freetype.FreeType;
 import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
 import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.LongArray;
 import com.badlogic.gdx.utils.StringBuilder;
-import com.badlogic.gdx.utils.reflect.ClassReflection;
-import com.badlogic.gdx.utils.reflect.Field;
-import com.badlogic.gdx.utils.reflect.ReflectionException;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static com.anyicomplex.gdx.tools.bmfont.BitmapFontPacker.Utils.*;
 
@@ -61,6 +68,8 @@ public class BitmapFontPacker {
     public static volatile boolean VERBOSE = false;
     /** The PlatformSupport handle. */
     public static volatile PlatformSupport platformSupport = new BitmapFontPacker.PlatformSupport(){};
+    /** The FontFaceRegistry shares font faces across processes. */
+    public static volatile FontFaceRegistry faceRegistry = new FontFaceRegistry();
 
     /** The log tag. */
     public static final String TAG = "BitmapFontPacker";
@@ -83,6 +92,13 @@ public class BitmapFontPacker {
 
         /** Format of the .fnt file */
         public String fntFormat = "txt";
+        /** Format of the glyph page files: png, ktx (RGBA8888), etc1 or eacR11. The GPU-compressed etc1 and eacR11 formats
+         * keep only the glyph coverage (alpha), see {@link PageEncoder}. */
+        public String pageFormat = "png";
+        /** Quantization of the png and ktx glyph pages: none (RGBA8888) or rgba4444, dithered to 4 bits per channel for
+         * half the texture memory. Quantized png pages can be loaded into RGBA4444 textures without further loss, ktx pages
+         * are written as GL_UNSIGNED_SHORT_4_4_4_4, see {@link PageQuantizer}. */
+        public String pageQuantization = "none";
         /** Whether the font is bold */
         public boolean bold = false;
         /** Whether the font is italic */
@@ -127,14 +143,38 @@ public class BitmapFontPacker {
         public int padTop, padLeft, padBottom, padRight;
         /** The characters the font should contain. If '\0' is not included then {@link BitmapFont.BitmapFontData#missingGlyph} is not set. */
         public String characters = FreeTypeFontGenerator.DEFAULT_CHARS;
+        /** The ordered fallback font files, each character is rendered from the first font covering it, starting with the
+         * input font. Metrics are normalized to the input font and all glyphs are packed into the same pages. */
+        public FileHandle[] fallbackFonts = null;
         /** Whether the font should include kerning */
         public boolean kerning = true;
+        /** Kerning pairs with a smaller magnitude in pixels are dropped, 0 keeps every nonzero pair. */
+        public int kerningThreshold = 0;
+        /** When set, only the kerning pairs occurring as adjacent characters in this text are kept. */
+        public String kerningCorpus = null;
         /** The optional PixmapPacker to use for packing multiple fonts into a single texture.
          * @see FreeTypeFontGenerator.FreeTypeFontParameter */
         public PixmapPacker packer = null;
+        /** Glyph placement policy deciding which glyphs share pages: none, block, script or priority.
+         * @see GlyphPlacement */
+        public String placement = "none";
+        /** The characters placed first, in order, by the priority placement policy. */
+        public String placementPriority = null;
+        /** Whether to write a .pages file listing the codepoint ranges of every page, so the pages can be loaded lazily. */
+        public boolean pageIndex = false;
+        /** Whether to write all the glyph pages, of the same size and format, as the layers of a single texture array file:
+         * a KTX 2D array texture with the ktx based page formats, or one png of the pages stacked from top to bottom. Every
+         * page of the .fnt file names that file, the page ids are the layer indices. libGDX only loads the non-array
+         * textures, the array is for GL3 or Vulkan runtimes drawing all pages with one bind. */
+        public boolean pageArray = false;
+        /** Whether to bundle the .fnt file, the pages and the optional page index into one uncompressed .zip archive,
+         * indexed so clients can read every file as a slice of the archive.
+         * @see FontArchive */
+        public boolean archive = false;
         /** Whether to flip the font vertically */
         public boolean flip = false;
-        /** Whether to generate mip maps for the resulting texture */
+        /** Whether to generate mip maps for the resulting texture. With the ktx page format, the mip maps are also
+         * generated offline and written to the page files. */
         public boolean genMipMaps = false;
         /** Minification filter */
         public Texture.TextureFilter minFilter = Texture.TextureFilter.Nearest;
@@ -148,6 +188,44 @@ public class BitmapFontPacker {
         public boolean incremental;
     }
 
+    /**
+     * Estimate of a run of {@link #process(FileHandle, FileHandle, Configuration, boolean)}, sizing the workers of
+     * large jobs before queueing them.
+     * @see BitmapFontPacker#plan(FileHandle, Configuration)
+     */
+    public static class Plan {
+        /** The amount of glyphs, with or without bitmap. */
+        public int glyphs;
+        /** The amount of characters skipped as not covered by the font nor its fallback fonts. */
+        public int skipped;
+        /** The amount of glyph pages. */
+        public int pages;
+        /** Glyph page width. */
+        public int pageWidth;
+        /** Glyph page height. */
+        public int pageHeight;
+        /** Fraction of the page texels covered by glyph bitmaps. */
+        public float occupancy;
+        /** Texture memory of all pages once loaded, mip maps included. */
+        public long textureBytes;
+        /** Estimated size of the page files. */
+        public long pageFileBytes;
+        /** Estimated peak memory of the glyph bitmaps, the pages and the page copies being encoded while processing. */
+        public long peakMemoryBytes;
+        /** Estimated processing time in milliseconds. */
+        public long millis;
+
+        @Override
+        public String toString() {
+            return "glyphs=" + glyphs + "\nskipped=" + skipped + "\npages=" + pages + "\npageWidth=" + pageWidth + "\npageHeight=" + pageHeight
+                    + "\noccupancy=" + occupancy + "\ntextureBytes=" + textureBytes + "\npageFileBytes=" + pageFileBytes
+                    + "\npeakMemoryBytes=" + peakMemoryBytes + "\nmillis=" + millis;
+        }
+    }
+
+    /** The amount of glyphs rendered to extrapolate the time of a plan. */
+    private static final int PLAN_SAMPLE_SIZE = 32;
+
     /**
      * Process the input file into BitmapFont to the output directory, if the file exists, override it.
      *
@@ -184,99 +262,952 @@ public class BitmapFontPacker {
         if (!outputDir.exists()) outputDir.mkdirs();
         if (!outputDir.isDirectory()) exception("outputDir is not a directory.");
         if (!outputDir.file().canWrite()) exception("outputDir is not writable.");
-        if (config == null) exception("config cannot be null.");
+        checkConfig(config);
         verbose("All parameters valid.");
-        verbose("Generating FreeType config...");
-        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(inputFile);
+        verbose("Acquiring font face...");
+        FontFaceRegistry registry = faceRegistry;
+        FontFaceRegistry.FontFace fontFace = registry.acquire(inputFile);
         try {
-            Field faceField = ClassReflection.getDeclaredField(FreeTypeFontGenerator.class, "face");
-            faceField.setAccessible(true);
-            FreeType.Face face = (FreeType.Face) faceField.get(generator);
-            int styleFlags = face.getStyleFlags();
-            if ((styleFlags & FreeType.FT_STYLE_FLAG_ITALIC) == FreeType.FT_STYLE_FLAG_ITALIC) config.italic = true;
-            if ((styleFlags & FreeType.FT_STYLE_FLAG_BOLD) == FreeType.FT_STYLE_FLAG_BOLD) config.bold = true;
-        } catch (ReflectionException ignored) {
+            return process(fontFace, outputDir, config, override);
         }
-        FreeTypeFontGenerator.FreeTypeFontParameter parameter = parameter(config);
-        if (config.pageWidth != -1 && config.pageHeight != -1) {
-            if (parameter.packer == null) {
-                parameter.packer = new PixmapPacker(config.pageWidth, config.pageHeight, Pixmap.Format.RGBA8888,
-                        1, false, new PixmapPacker.SkylineStrategy());
-                parameter.packer.setTransparentColor(config.color);
-                parameter.packer.getTransparentColor().a = 0;
-                if (config.borderWidth > 0) {
-                    parameter.packer.setTransparentColor(config.borderColor);
-                    parameter.packer.getTransparentColor().a = 0;
+        finally {
+            verbose("Releasing font face...");
+            registry.release(fontFace);
+        }
+    }
+
+    /**
+     * Process the face shared by {@link FontFaceRegistry} into BitmapFont to the output directory.
+     * Useful for batch jobs which keep the face acquired between processes.
+     *
+     * @see ExitCode
+     *
+     * @param fontFace the acquired font face
+     * @param outputDir the BitmapFont output directory
+     * @param config the processor configuration
+     * @param override whether override if file exists
+     * @return exit code
+     */
+    public static int process(FontFaceRegistry.FontFace fontFace, FileHandle outputDir, Configuration config, boolean override) {
+        if (fontFace == null) exception("fontFace cannot be null.");
+        if (outputDir == null) exception("outputDir cannot be null.");
+        if (!outputDir.exists()) outputDir.mkdirs();
+        if (!outputDir.isDirectory()) exception("outputDir is not a directory.");
+        checkConfig(config);
+        if (fontFace.isItalic()) config.italic = true;
+        if (fontFace.isBold()) config.bold = true;
+        GlyphCollector collector = new GlyphCollector();
+        Array<FontFaceRegistry.FontFace> fallbackFaces = new Array<>();
+        Array<FreeTypeFontGenerator.FreeTypeBitmapFontData> faceData = new Array<>();
+        try {
+            acquireFallbackFaces(config, fallbackFaces);
+            GlyphIndex index = new GlyphIndex(config.characters.length());
+            BitmapFont.BitmapFontData data = generateData(fontFace, fallbackFaces, config, config.characters, null, collector, faceData, index);
+            String fileName = stringNotEmpty(config.name) ? config.name : fontFace.getFontFile().nameWithoutExtension();
+            return write(data, index, collector, fileName, outputDir, config, override, fallbackFaces.size > 0);
+        }
+        finally {
+            verbose("Cleaning up...");
+            for (FreeTypeFontGenerator.FreeTypeBitmapFontData data : faceData) data.dispose();
+            for (FontFaceRegistry.FontFace fallbackFace : fallbackFaces) faceRegistry.release(fallbackFace);
+            collector.dispose();
+            verbose("Done.");
+        }
+    }
+
+    /**
+     * Rasterize one shard of the characters into an intermediate glyph-bitmap file, so a big font can be generated by
+     * several processes or machines, then finished with {@link #mergeShards(FileHandle[], FileHandle, Configuration, boolean)}.
+     * Shard i holds every codepoint at index i, i + shardCount, i + 2 * shardCount... of {@link Configuration#characters},
+     * with kerning against all the characters, so pairs spanning shards are kept.
+     *
+     * @see ExitCode
+     *
+     * @param inputFile the FreeType supported font file
+     * @param shardFile the shard output file
+     * @param config the processor configuration, should be the same for all shards
+     * @param shardIndex the index of the shard, from 0 to shardCount - 1
+     * @param shardCount the amount of shards
+     * @param override whether override if file exists
+     * @return exit code
+     */
+    public static int processShard(FileHandle inputFile, FileHandle shardFile, Configuration config, int shardIndex, int shardCount, boolean override) {
+        verbose("Process shard [" + (shardIndex + 1) + "/" + shardCount + "] begin.");
+        verbose("Checking parameters...");
+        if (inputFile == null) exception("inputFile cannot be null.");
+        if (!inputFile.exists()) exception("inputFile not exists.");
+        if (inputFile.isDirectory()) exception("inputFile is not a regular file.");
+        if (shardFile == null) exception("shardFile cannot be null.");
+        if (shardFile.isDirectory()) exception("shardFile is not a regular file.");
+        if (shardCount < 1) exception("shardCount must be positive.");
+        if (shardIndex < 0 || shardIndex >= shardCount) exception("shardIndex out of range.");
+        checkConfig(config);
+        if (!override && shardFile.exists()) {
+            error("Shard file already exists.");
+            return ExitCode.FILE_EXISTS;
+        }
+        verbose("All parameters valid.");
+        int[] codepoints = config.characters.codePoints().toArray();
+        StringBuilder builder = new StringBuilder();
+        for (int i = shardIndex; i < codepoints.length; i += shardCount) {
+            builder.appendCodePoint(codepoints[i]);
+        }
+        String characters = builder.toString();
+        FontFaceRegistry registry = faceRegistry;
+        FontFaceRegistry.FontFace fontFace = registry.acquire(inputFile);
+        GlyphCollector collector = new GlyphCollector();
+        Array<FontFaceRegistry.FontFace> fallbackFaces = new Array<>();
+        Array<FreeTypeFontGenerator.FreeTypeBitmapFontData> faceData = new Array<>();
+        try {
+            acquireFallbackFaces(config, fallbackFaces);
+            String[] kerningSubsets = fallbackFaces.size > 0 ? fallbackSubsets(fontFace, fallbackFaces, config.characters) : new String[] { config.characters };
+            GlyphIndex index = new GlyphIndex(characters.length());
+            BitmapFont.BitmapFontData data = generateData(fontFace, fallbackFaces, config, characters, kerningSubsets, collector, faceData, index);
+            // Glyphs the generator adds on its own (the space glyph) are kept by the first shard only.
+            Array<BitmapFont.Glyph> glyphs = new Array<>(index.size());
+            for (BitmapFont.Glyph glyph : index.sorted()) {
+                boolean own = (glyph.id != 0 && glyph.id != ' ') || characters.indexOf(glyph.id) != -1;
+                if (own || (shardIndex == 0 && config.characters.indexOf(glyph.id) == -1)) glyphs.add(glyph);
+            }
+            GlyphShard shard = new GlyphShard();
+            shard.name = stringNotEmpty(config.name) ? config.name : inputFile.nameWithoutExtension();
+            shard.bold = config.bold || fontFace.isBold();
+            shard.italic = config.italic || fontFace.isItalic();
+            shard.index = shardIndex;
+            shard.count = shardCount;
+            verbose("Writing " + glyphs.size + " glyphs to shard file...");
+            try (OutputStream output = shardFile.write(false)) {
+                GlyphShard.write(output, shard, data, glyphs, index, collector);
+            } catch (IOException e) {
+                exception(e);
+            }
+            verbose("File generated successfully at: " + shardFile.path());
+            return ExitCode.SUCCESS;
+        }
+        finally {
+            verbose("Cleaning up...");
+            for (FreeTypeFontGenerator.FreeTypeBitmapFontData data : faceData) data.dispose();
+            for (FontFaceRegistry.FontFace fallbackFace : fallbackFaces) registry.release(fallbackFace);
+            registry.release(fontFace);
+            collector.dispose();
+            verbose("Done.");
+        }
+    }
+
+    /**
+     * Pack the glyphs of all shards written by {@link #processShard(FileHandle, FileHandle, Configuration, int, int, boolean)}
+     * and write the BitmapFont to the output directory.
+     *
+     * @see ExitCode
+     *
+     * @param shardFiles the shard files, all shards of a font are required
+     * @param outputDir the BitmapFont output directory
+     * @param config the processor configuration, should be the same as the shards were generated with
+     * @param override whether override if file exists
+     * @return exit code
+     */
+    public static int mergeShards(FileHandle[] shardFiles, FileHandle outputDir, Configuration config, boolean override) {
+        verbose("Merge shards begin.");
+        verbose("Checking parameters...");
+        if (shardFiles == null || shardFiles.length == 0) exception("shardFiles cannot be empty.");
+        for (FileHandle shardFile : shardFiles) {
+            if (shardFile == null) exception("shardFiles cannot contain null.");
+            if (!shardFile.exists() || shardFile.isDirectory()) exception("shardFile is not a regular file: " + shardFile.path());
+        }
+        if (outputDir == null) exception("outputDir cannot be null.");
+        if (!outputDir.exists()) outputDir.mkdirs();
+        if (!outputDir.isDirectory()) exception("outputDir is not a directory.");
+        checkConfig(config);
+        verbose("All parameters valid.");
+        GlyphCollector collector = new GlyphCollector();
+        try {
+            BitmapFont.BitmapFontData data = new BitmapFont.BitmapFontData();
+            GlyphIndex index = new GlyphIndex();
+            GlyphShard first = null;
+            boolean[] merged = null;
+            for (FileHandle shardFile : shardFiles) {
+                verbose("Reading shard file " + shardFile.path() + "...");
+                GlyphShard shard = null;
+                try (InputStream input = shardFile.read()) {
+                    shard = GlyphShard.read(input, data, index, collector);
+                } catch (IOException e) {
+                    exception(e);
                 }
+                if (first == null) {
+                    first = shard;
+                    merged = new boolean[shard.count];
+                }
+                if (shard.count != first.count || !shard.name.equals(first.name)) exception("Shard file doesn't belong to the same font: " + shardFile.path());
+                if (merged[shard.index]) exception("Duplicate shard file: " + shardFile.path());
+                merged[shard.index] = true;
+            }
+            for (int i = 0; i < merged.length; i ++) {
+                if (!merged[i]) exception("Missing shard [" + (i + 1) + "/" + merged.length + "].");
             }
+            verbose("All " + merged.length + " shards read successfully.");
+            config.bold |= first.bold;
+            config.italic |= first.italic;
+            String fileName = stringNotEmpty(config.name) ? config.name : first.name;
+            return write(data, index, collector, fileName, outputDir, config, override, true);
         }
+        finally {
+            verbose("Cleaning up...");
+            collector.dispose();
+            verbose("Done.");
+        }
+    }
+
+    /**
+     * Estimate the pages, memory and time {@link #process(FileHandle, FileHandle, Configuration, boolean)} would take
+     * without rendering the font. The glyph bitmaps are measured from the hinted outline metrics with the padding,
+     * border and shadow of the configuration, then placed like the built-in packer places them. The time is
+     * extrapolated from rendering and encoding a small sample of the glyphs. {@link Configuration#packer} is ignored.
+     *
+     * @param inputFile the FreeType supported font file
+     * @param config the processor configuration
+     * @return the plan
+     */
+    public static Plan plan(FileHandle inputFile, Configuration config) {
+        verbose("Plan begin.");
+        verbose("Checking parameters...");
+        if (inputFile == null) exception("inputFile cannot be null.");
+        if (!inputFile.exists()) exception("inputFile not exists.");
+        if (inputFile.isDirectory()) exception("inputFile is not a regular file.");
+        checkConfig(config);
+        verbose("All parameters valid.");
+        FontFaceRegistry registry = faceRegistry;
+        FontFaceRegistry.FontFace fontFace = registry.acquire(inputFile);
+        Array<FontFaceRegistry.FontFace> fallbackFaces = new Array<>();
+        try {
+            acquireFallbackFaces(config, fallbackFaces);
+            Plan plan = new Plan();
+            verbose("Measuring glyphs...");
+            long measureStart = System.nanoTime();
+            FreeTypeFontGenerator.FreeTypeFontParameter parameter = parameter(config);
+            IntArray uncovered = new IntArray();
+            String characters = coveredCharacters(fontFace, fallbackFaces, config.characters, uncovered);
+            // Plans are made ahead of every queued job, the skipped characters are reported when processing.
+            plan.skipped = uncovered.size;
+            if (uncovered.size > 0) verbose(uncoveredReport(uncovered));
+            String[] subsets = fallbackFaces.size > 0 ? fallbackSubsets(fontFace, fallbackFaces, characters) : new String[] { characters };
+            Array<BitmapFont.Glyph> glyphs = new Array<>(characters.length());
+            float lineHeight = 0;
+            for (int i = 0; i < subsets.length; i ++) {
+                if (i > 0 && subsets[i].isEmpty()) continue;
+                FontFaceRegistry.FontFace face = i == 0 ? fontFace : fallbackFaces.get(i - 1);
+                Array<BitmapFont.Glyph> measured;
+                synchronized (face) {
+                    if (i == 0) lineHeight = face.getCompositingGenerator().measureLineHeight(parameter);
+                    measured = face.getCompositingGenerator().measureGlyphs(codepoints(subsets[i]), parameter);
+                }
+                if (measured == null) exception("Cannot plan bitmap font without rendering it: " + face.getFontFile().name());
+                glyphs.addAll(measured);
+            }
+            long measureNanos = System.nanoTime() - measureStart;
+            // The generator adds the space glyph on its own.
+            plan.glyphs = glyphs.size + (characters.indexOf(' ') == -1 ? 1 : 0);
+            Array<BitmapFont.Glyph> packed = new Array<>(glyphs.size);
+            long glyphTexels = 0;
+            for (BitmapFont.Glyph glyph : glyphs) {
+                if (glyph.width == 0 || glyph.height == 0) continue;
+                packed.add(glyph);
+                glyphTexels += (long) glyph.width * glyph.height;
+            }
+            verbose("Simulating packing of " + packed.size + " glyphs...");
+            long packStart = System.nanoTime();
+            sortTallestFirst(packed);
+            GlyphPlacement.sort(packed, config.placement, config.placementPriority);
+            int pageWidth = config.pageWidth, pageHeight = config.pageHeight;
+            if (pageWidth == -1 || pageHeight == -1) pageWidth = pageHeight = autoPageSize(config, lineHeight);
+            SkylinePacker packer = new SkylinePacker(pageWidth, pageHeight, 1, GlyphPlacement.backfill(config.placement));
+            Rectangle rect = new Rectangle();
+            int pages = 1;
+            for (BitmapFont.Glyph glyph : packed) {
+                rect.set(0, 0, glyph.width, glyph.height);
+                if (rect.width > pageWidth || rect.height > pageHeight) exception("Page size too small for glyph: " + glyph.id);
+                pages = Math.max(pages, packer.pack(rect) + 1);
+            }
+            long packNanos = System.nanoTime() - packStart;
+            plan.pages = pages;
+            plan.pageWidth = pageWidth;
+            plan.pageHeight = pageHeight;
+            plan.occupancy = (float) ((double) glyphTexels / ((double) pageWidth * pageHeight * pages));
+            int levels = config.genMipMaps ? MipMapGenerator.levelCount(pageWidth, pageHeight) : 1;
+            for (int level = 0; level < levels; level ++) {
+                plan.textureBytes += PageEncoder.levelBytes(config.pageFormat, config.pageQuantization,
+                        Math.max(1, pageWidth >> level), Math.max(1, pageHeight >> level)) * pages;
+            }
+            verbose("Rendering a sample of the glyphs...");
+            long[] sampleNanos = new long[2];
+            long[] pageNanos = new long[1];
+            int[] pageFileBytes = new int[1];
+            long sampleTexels = sample(fontFace, fallbackFaces, config, packed, plan.occupancy, pageWidth, pageHeight, sampleNanos, pageNanos, pageFileBytes);
+            int sampleSize = Math.min(PLAN_SAMPLE_SIZE, packed.size);
+            long kerningNanos = 0;
+            if (sampleNanos[1] > 0) {
+                // The kerning of every pair of glyphs is looked up.
+                kerningNanos = sampleNanos[1] * glyphs.size / sampleSize * glyphs.size / sampleSize;
+            }
+            // Loading a glyph costs about as much as measuring it, rasterizing and compositing scale with its texels.
+            long renderNanos = measureNanos;
+            if (sampleTexels > 0) {
+                long sampleLoadNanos = measureNanos * sampleSize / glyphs.size;
+                renderNanos += (long) ((double) Math.max(0, sampleNanos[0] - sampleLoadNanos) * glyphTexels / sampleTexels);
+            }
+            // KTX pages are encoded in parallel.
+            int parallelism = PageEncoder.ktxFormat(config.pageFormat) == null ? 1 : Runtime.getRuntime().availableProcessors();
+            long encodeNanos = pageNanos[0] * ((pages + parallelism - 1) / parallelism);
+            plan.millis = (renderNanos + kerningNanos + packNanos + encodeNanos) / 1000000;
+            plan.pageFileBytes = (long) pageFileBytes[0] * pages;
+            long pageBytes = (long) pageWidth * pageHeight * 4 * pages;
+            // Files are streamed, separate pages are copied and encoded a few at a time, a page array copies all of them.
+            long copyBytes = (long) pageWidth * pageHeight * 4 * (config.pageArray ? pages : Math.min(pages, parallelism));
+            long levelsBytes = PageEncoder.ktxFormat(config.pageFormat) == null ? (config.pageArray ? copyBytes : 0) : copyBytes * (levels > 1 ? 4 : 3) / 3;
+            plan.peakMemoryBytes = glyphTexels * 4 + pageBytes + levelsBytes;
+            verbose("Plan finished successfully.");
+            return plan;
+        }
+        finally {
+            verbose("Cleaning up...");
+            for (FontFaceRegistry.FontFace fallbackFace : fallbackFaces) registry.release(fallbackFace);
+            registry.release(fontFace);
+            verbose("Done.");
+        }
+    }
+
+    /**
+     * Render a sample of the glyphs evenly picked from the measured ones, then encode a page filled with them to the
+     * occupancy of the plan. The sample is rendered twice, the first run warms up.
+     *
+     * @param sampleNanos receives the time to render the sample, then the time to look up the kerning of its pairs
+     * @param pageNanos receives the time to encode the page
+     * @param pageFileBytes receives the encoded size of the page
+     * @return the measured texels of the sample glyphs
+     */
+    private static long sample(FontFaceRegistry.FontFace fontFace, Array<FontFaceRegistry.FontFace> fallbackFaces, Configuration config,
+                               Array<BitmapFont.Glyph> glyphs, float occupancy, int pageWidth, int pageHeight,
+                               long[] sampleNanos, long[] pageNanos, int[] pageFileBytes) {
+        if (glyphs.size == 0) return 0;
+        StringBuilder builder = new StringBuilder();
+        IntArray sample = new IntArray(PLAN_SAMPLE_SIZE);
+        long sampleTexels = 0;
+        float step = Math.max(1f, glyphs.size / (float) PLAN_SAMPLE_SIZE);
+        for (float i = 0; i < glyphs.size && sample.size < PLAN_SAMPLE_SIZE; i += step) {
+            BitmapFont.Glyph glyph = glyphs.get((int) i);
+            sample.add(glyph.id);
+            builder.appendCodePoint(glyph.id);
+            sampleTexels += (long) glyph.width * glyph.height;
+        }
+        String characters = builder.toString();
+        // Empty kerning subsets, the kerning is timed apart.
+        String[] kerningSubsets = new String[fallbackFaces.size + 1];
+        Arrays.fill(kerningSubsets, "");
+        Array<FreeTypeFontGenerator.FreeTypeBitmapFontData> faceData = new Array<>();
+        GlyphCollector collector = null;
+        GlyphIndex index = null;
+        Pixmap page = null;
+        try {
+            for (int run = 0; run < 2; run ++) {
+                if (collector != null) collector.dispose();
+                for (FreeTypeFontGenerator.FreeTypeBitmapFontData data : faceData) data.dispose();
+                faceData.clear();
+                collector = new GlyphCollector();
+                index = new GlyphIndex(sample.size);
+                long start = System.nanoTime();
+                generateData(fontFace, fallbackFaces, config, characters, kerningSubsets, collector, faceData, index);
+                sampleNanos[0] = System.nanoTime() - start;
+            }
+            if (config.kerning && fontFace.hasKerning()) {
+                int[] indices = new int[sample.size];
+                for (int i = 0; i < indices.length; i ++) indices[i] = fontFace.getCharIndex(sample.get(i));
+                synchronized (fontFace) {
+                    fontFace.getCompositingGenerator().measureLineHeight(parameter(config));
+                    for (int run = 0; run < 2; run ++) {
+                        long start = System.nanoTime();
+                        for (int first : indices) {
+                            for (int second : indices) fontFace.getKerning(first, second);
+                        }
+                        sampleNanos[1] = System.nanoTime() - start;
+                    }
+                }
+            }
+            Color transparentColor = new Color(config.borderWidth > 0 ? config.borderColor : config.color);
+            transparentColor.a = 0;
+            page = new Pixmap(pageWidth, pageHeight, Pixmap.Format.RGBA8888);
+            page.setBlending(Pixmap.Blending.None);
+            page.setColor(transparentColor);
+            page.fill();
+            SkylinePacker packer = new SkylinePacker(pageWidth, pageHeight, 1, false);
+            Rectangle rect = new Rectangle();
+            Array<Pixmap> images = new Array<>(sample.size);
+            for (BitmapFont.Glyph glyph : index.sorted()) {
+                Pixmap image = collector.getImage(glyph);
+                if (image != null) images.add(image);
+            }
+            long texels = 0, target = (long) (occupancy * pageWidth * pageHeight);
+            boolean full = images.size == 0;
+            while (!full && texels < target) {
+                for (int i = 0; i < images.size && texels < target; i ++) {
+                    Pixmap image = images.get(i);
+                    rect.set(0, 0, image.getWidth(), image.getHeight());
+                    if (packer.pack(rect) > 0) {
+                        full = true;
+                        break;
+                    }
+                    page.drawPixmap(image, (int) rect.x, (int) rect.y);
+                    texels += (long) image.getWidth() * image.getHeight();
+                }
+            }
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            long start = System.nanoTime();
+            try {
+                processPages(new Pixmap[] { page }, new FileHandle[] { new FileHandle("plan" + pageExtension(config)) }, config, file -> output);
+            } catch (IOException e) {
+                exception(e);
+            }
+            pageNanos[0] = System.nanoTime() - start;
+            pageFileBytes[0] = output.size();
+            return sampleTexels;
+        }
+        finally {
+            if (page != null) page.dispose();
+            if (collector != null) collector.dispose();
+            for (FreeTypeFontGenerator.FreeTypeBitmapFontData data : faceData) data.dispose();
+        }
+    }
+
+    private static void acquireFallbackFaces(Configuration config, Array<FontFaceRegistry.FontFace> fallbackFaces) {
+        if (config.fallbackFonts == null || config.fallbackFonts.length == 0) return;
+        verbose("Acquiring fallback font faces...");
+        FontFaceRegistry registry = faceRegistry;
+        for (FileHandle fallbackFont : config.fallbackFonts) {
+            fallbackFaces.add(registry.acquire(fallbackFont));
+        }
+    }
+
+    /**
+     * Render the characters from the input face and the fallback faces into glyphs collected by the collector.
+     * Supplementary codepoints the generator can't render are rendered after it by the face's
+     * {@link CompositingFontGenerator}.
+     *
+     * @param kerningSubsets the characters of every face to compute the kerning of the rendered glyphs against, null to
+     *                       let the generator compute the kerning between the rendered glyphs
+     * @param faceData receives the generated data of every face, to be disposed by the caller
+     * @param index receives the glyphs of all faces
+     * @return the data of the input face, holding the font metrics
+     */
+    private static BitmapFont.BitmapFontData generateData(FontFaceRegistry.FontFace fontFace, Array<FontFaceRegistry.FontFace> fallbackFaces,
+                                                          Configuration config, String characters, String[] kerningSubsets,
+                                                          GlyphCollector collector, Array<FreeTypeFontGenerator.FreeTypeBitmapFontData> faceData,
+                                                          GlyphIndex index) {
+        verbose("Generating FreeType config...");
+        FreeTypeFontGenerator.FreeTypeFontParameter parameter = parameter(config);
+        parameter.packer = collector;
         verbose("FreeType config generated successfully.");
-        verbose("Generating BitmapFont data...");
-        FreeTypeFontGenerator.FreeTypeBitmapFontData data = new FreeTypeFontGenerator.FreeTypeBitmapFontData();
-        BitmapFont bitmapFont = generator.generateFont(parameter, data);
-        verbose("BitmapFont data generated successfully.");
-        String fileName = stringNotEmpty(config.name) ? config.name : inputFile.nameWithoutExtension();
-        FileHandle[] pageFiles = new FileHandle[bitmapFont.getRegions().size];
-        verbose("Glyph page amount: " + pageFiles.length);
-        for (int i = 0; i < bitmapFont.getRegions().size; i ++) {
-            FileHandle pageFile = outputDir.child(fileName + (bitmapFont.getRegions().size == 1 ? ".png" : "_" + i + ".png"));
-            pageFiles[i] = pageFile;
-        }
-        FileHandle fntFile = outputDir.child(fileName + ".fnt");
-        if (!override) {
-            verbose("Checking whether files exists...");
-            for (FileHandle pageFile : pageFiles) {
-                if (pageFile.exists()) {
-                    try {
+        IntArray uncovered = new IntArray();
+        characters = coveredCharacters(fontFace, fallbackFaces, characters, uncovered);
+        if (uncovered.size > 0) info(uncoveredReport(uncovered));
+        String[] subsets = fallbackFaces.size > 0 ? fallbackSubsets(fontFace, fallbackFaces, characters) : new String[] { characters };
+        FreeTypeFontGenerator.FreeTypeBitmapFontData data = null;
+        for (int i = 0; i < subsets.length; i ++) {
+            if (i > 0 && subsets[i].isEmpty()) continue;
+            FontFaceRegistry.FontFace face = i == 0 ? fontFace : fallbackFaces.get(i - 1);
+            if (i == 0) verbose("Generating BitmapFont data...");
+            else verbose("Generating fallback BitmapFont data of " + face.getFontFile().name() + " for "
+                    + subsets[i].codePointCount(0, subsets[i].length()) + " characters...");
+            FreeTypeFontGenerator.FreeTypeBitmapFontData generated = new FreeTypeFontGenerator.FreeTypeBitmapFontData();
+            faceData.add(generated);
+            IntArray codepoints = codepoints(subsets[i]), chars = new IntArray(codepoints.size), supplementary = new IntArray();
+            StringBuilder builder = new StringBuilder(subsets[i].length());
+            for (int j = 0; j < codepoints.size; j ++) {
+                int codepoint = codepoints.get(j);
+                if (Character.isBmpCodePoint(codepoint)) {
+                    chars.add(codepoint);
+                    builder.append((char) codepoint);
+                }
+                else supplementary.add(codepoint);
+            }
+            parameter.characters = builder.toString();
+            // The generator turns kerning off in the parameter for faces without kerning.
+            parameter.kerning = config.kerning && kerningSubsets == null;
+            synchronized (face) {
+                face.getGenerator().generateData(parameter, generated);
+                Array<BitmapFont.Glyph> glyphs = face.getCompositingGenerator().createGlyphs(supplementary, parameter, generated, collector);
+                for (int j = 0; j < chars.size; j ++) {
+                    BitmapFont.Glyph glyph = generated.getGlyph((char) chars.get(j));
+                    if (glyph != null) glyphs.add(glyph);
+                }
+                if (i == 0) {
+                    data = generated;
+                    // Glyphs the generator adds on its own.
+                    if (generated.getGlyph(' ') != null) glyphs.add(generated.getGlyph(' '));
+                    if (generated.getGlyph((char) 0) != null) glyphs.add(generated.getGlyph((char) 0));
+                    for (BitmapFont.Glyph glyph : glyphs) index.put(glyph);
+                    verbose("BitmapFont data generated successfully.");
+                }
+                else {
+                    mergeFallback(data, generated, glyphs, index);
+                    verbose("Fallback BitmapFont data merged successfully.");
+                }
+                if (config.kerning && kerningSubsets != null) kerning(face, index, codepoints, codepoints(kerningSubsets[i]));
+                else if (parameter.kerning && supplementary.size > 0) {
+                    // The generator only kerns the chars it renders.
+                    kerning(face, index, supplementary, codepoints);
+                    kerning(face, index, chars, supplementary);
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * Set the kerning of the glyphs of the first codepoints against the second codepoints, like the generator does
+     * between the characters it renders. Should be called while holding the lock of the face, right after generating.
+     */
+    private static void kerning(FontFaceRegistry.FontFace face, GlyphIndex index, IntArray firsts, IntArray seconds) {
+        if (!face.hasKerning()) return;
+        int[] secondIndices = new int[seconds.size];
+        for (int j = 0; j < seconds.size; j ++) secondIndices[j] = face.getCharIndex(seconds.get(j));
+        for (int i = 0; i < firsts.size; i ++) {
+            BitmapFont.Glyph first = index.get(firsts.get(i));
+            if (first == null) continue;
+            int firstIndex = face.getCharIndex(first.id);
+            for (int j = 0; j < seconds.size; j ++) {
+                int kerning = face.getKerning(firstIndex, secondIndices[j]);
+                if (kerning != 0) index.setKerning(first, seconds.get(j), kerning);
+            }
+        }
+    }
+
+    /**
+     * Pack the collected glyphs and write the page files, the .fnt file and the optional page index.
+     *
+     * @param resort whether the glyphs come from several generator runs and should be sorted tallest first again
+     * @return exit code
+     */
+    private static int write(BitmapFont.BitmapFontData data, GlyphIndex index, GlyphCollector collector, String fileName, FileHandle outputDir,
+                             Configuration config, boolean override, boolean resort) {
+        Array<Pixmap> pages = new Array<>(Pixmap.class);
+        try {
+            if (config.kerning && (config.kerningThreshold > 0 || config.kerningCorpus != null)) pruneKerning(index, config);
+            verbose("Packing glyphs with placement policy " + config.placement + "...");
+            packGlyphs(data, index, collector, pages, config, resort);
+            FileHandle[] pageFiles = new FileHandle[pages.size];
+            verbose("Glyph page amount: " + pageFiles.length);
+            FileHandle pageArrayFile = config.pageArray ? outputDir.child(fileName + pageExtension(config)) : null;
+            for (int i = 0; i < pages.size; i ++) {
+                FileHandle pageFile = pageArrayFile != null ? pageArrayFile : outputDir.child(fileName + (pages.size == 1 ? "" : "_" + i) + pageExtension(config));
+                pageFiles[i] = pageFile;
+            }
+            FileHandle fntFile = outputDir.child(fileName + ".fnt");
+            FileHandle indexFile = config.pageIndex ? outputDir.child(fileName + ".pages") : null;
+            FileHandle archiveFile = config.archive ? outputDir.child(fileName + FontArchive.EXTENSION) : null;
+            if (!override) {
+                verbose("Checking whether files exists...");
+                Array<FileHandle> files = new Array<>();
+                if (archiveFile != null) files.add(archiveFile);
+                else {
+                    if (pageArrayFile != null) files.add(pageArrayFile);
+                    else files.addAll(pageFiles);
+                    files.add(fntFile);
+                    if (indexFile != null) files.add(indexFile);
+                }
+                for (FileHandle file : files) {
+                    if (file.exists()) {
                         error("BitmapFont files already exists.");
                         return ExitCode.FILE_EXISTS;
                     }
-                    finally {
-                        verbose("Cleaning up...");
-                        bitmapFont.dispose();
-                        verbose("Done.");
+                    verbose(file.path() + " does not exist, pass.");
+                }
+            }
+            Array<FileHandle> files = pageArrayFile != null ? Array.with(pageArrayFile) : new Array<>(pageFiles);
+            files.insert(0, fntFile);
+            if (indexFile != null) files.add(indexFile);
+            // Files are written as soon as they are generated, into the archive entry by entry when archiving.
+            try (FontArchive.Writer archive = archiveFile != null ? new FontArchive.Writer(archiveFile) : null) {
+                FileOutput output = archive == null ? file -> file.write(false) : file -> archive.entry(file.name());
+                verbose("Generating .fnt file...");
+                try (OutputStream fnt = output.write(fntFile)) {
+                    fnt.write(processFnt(data, index, pageFiles, pages.first().getWidth(), pages.first().getHeight(), fntFile, config));
+                }
+                if (pageArrayFile != null) {
+                    verbose("Generating glyph page array file with " + pages.size + " layers...");
+                    processPageArray(pages.toArray(), pageArrayFile, config, output);
+                }
+                else {
+                    verbose("Generating glyph page files...");
+                    processPages(pages.toArray(), pageFiles, config, output);
+                }
+                if (indexFile != null) {
+                    verbose("Generating page index file...");
+                    try (OutputStream pageIndex = output.write(indexFile)) {
+                        pageIndex.write(processPageIndex(index, pageFiles));
                     }
                 }
-                verbose(pageFile.path() + " does not exist, pass.");
+                if (archive != null) {
+                    verbose("Writing index of " + files.size + " files to archive...");
+                    archive.commit();
+                }
+            } catch (IOException e) {
+                exception(e);
             }
-            if (fntFile.exists()) {
-                try {
-                    error("BitmapFont files already exists.");
-                    return ExitCode.FILE_EXISTS;
+            if (archiveFile != null) verbose("File generated successfully at: " + archiveFile.path());
+            else {
+                for (FileHandle file : files) verbose("File generated successfully at: " + file.path());
+            }
+            return ExitCode.SUCCESS;
+        }
+        finally {
+            if (config.packer == null) {
+                for (Pixmap page : pages) page.dispose();
+            }
+        }
+    }
+
+    /**
+     * Drop the kerning pairs below {@link Configuration#kerningThreshold} or not occurring in
+     * {@link Configuration#kerningCorpus}, and free the kerning pages left empty.
+     */
+    private static void pruneKerning(GlyphIndex index, Configuration config) {
+        LongArray bigrams = null;
+        if (config.kerningCorpus != null) {
+            IntArray corpus = codepoints(config.kerningCorpus);
+            bigrams = new LongArray(corpus.size);
+            for (int i = 1; i < corpus.size; i ++) bigrams.add((long) corpus.get(i - 1) << 21 | corpus.get(i));
+            Arrays.sort(bigrams.items, 0, bigrams.size);
+        }
+        int kept = 0, pruned = 0;
+        IntIntMap pairs = new IntIntMap();
+        for (BitmapFont.Glyph glyph : index.sorted()) {
+            if (index.getKernings(glyph, pairs) == 0) continue;
+            // Re-adding the kept pairs frees the kerning pages left empty.
+            index.clearKernings(glyph);
+            for (IntIntMap.Entry pair : pairs) {
+                if (Math.abs(pair.value) < config.kerningThreshold
+                        || (bigrams != null && Arrays.binarySearch(bigrams.items, 0, bigrams.size, (long) glyph.id << 21 | pair.key) < 0)) {
+                    pruned ++;
                 }
-                finally {
-                    verbose("Cleaning up...");
-                    bitmapFont.dispose();
-                    verbose("Done.");
+                else {
+                    index.setKerning(glyph, pair.key, pair.value);
+                    kept ++;
                 }
             }
-            verbose(fntFile.path() + " does not exist, pass.");
         }
-        verbose("Generating glyph page files...");
-        for (int i = 0; i < pageFiles.length; i ++) {
-            verbose("Rendering page [" + (i + 1) + "/" + bitmapFont.getRegions().size + "]");
-            Pixmap pixmap = bitmapFont.getRegion(i).getTexture().getTextureData().consumePixmap();
-            PixmapIO.writePNG(pageFiles[i], pixmap);
-            verbose("File generated successfully at: " + pageFiles[i].path());
+        info("Kerning pairs pruned: " + pruned + " of " + (kept + pruned) + ", " + kept + " kept.");
+    }
+
+    /**
+     * Place the collected glyphs on pages in the order of the placement policy.
+     * Without {@link Configuration#packer}, pages are composed like the generator's own packer would do.
+     */
+    private static void packGlyphs(BitmapFont.BitmapFontData data, GlyphIndex index, GlyphCollector collector, Array<Pixmap> pages,
+                                   Configuration config, boolean resort) {
+        Array<BitmapFont.Glyph> glyphs = new Array<>(index.size());
+        for (BitmapFont.Glyph glyph : index.sorted()) {
+            if (collector.collected(glyph)) glyphs.add(glyph);
+        }
+        glyphs.sort((a, b) -> collector.indexOf(a) - collector.indexOf(b));
+        // Glyphs of later generator runs were collected after the others, restore the generator's order.
+        if (resort) sortTallestFirst(glyphs);
+        GlyphPlacement.sort(glyphs, config.placement, config.placementPriority);
+        if (config.packer != null) {
+            PixmapPacker packer = config.packer;
+            for (BitmapFont.Glyph glyph : glyphs) {
+                Pixmap image = collector.getImage(glyph);
+                if (image == null) {
+                    glyph.page = 0;
+                    glyph.srcX = 0;
+                    glyph.srcY = 0;
+                    continue;
+                }
+                String name = data.name + "_" + glyph.id;
+                Rectangle rect = packer.pack(name, image);
+                glyph.page = packer.getPageIndex(name);
+                glyph.srcX = (int) rect.x;
+                glyph.srcY = (int) rect.y;
+            }
+            for (PixmapPacker.Page page : packer.getPages()) pages.add(page.getPixmap());
+            return;
+        }
+        int pageWidth = config.pageWidth, pageHeight = config.pageHeight;
+        if (pageWidth == -1 || pageHeight == -1) pageWidth = pageHeight = autoPageSize(config, data.lineHeight);
+        Color transparentColor = new Color(config.borderWidth > 0 ? config.borderColor : config.color);
+        transparentColor.a = 0;
+        SkylinePacker packer = new SkylinePacker(pageWidth, pageHeight, 1, GlyphPlacement.backfill(config.placement));
+        Rectangle rect = new Rectangle();
+        for (BitmapFont.Glyph glyph : glyphs) {
+            Pixmap image = collector.getImage(glyph);
+            rect.set(0, 0, glyph.width, glyph.height);
+            if (rect.width > pageWidth || rect.height > pageHeight) exception("Page size too small for glyph: " + glyph.id);
+            int page = packer.pack(rect);
+            while (pages.size <= page) {
+                Pixmap pixmap = new Pixmap(pageWidth, pageHeight, Pixmap.Format.RGBA8888);
+                pixmap.setBlending(Pixmap.Blending.None);
+                pixmap.setColor(transparentColor);
+                pixmap.fill();
+                pages.add(pixmap);
+            }
+            if (image != null) pages.get(page).drawPixmap(image, (int) rect.x, (int) rect.y);
+            glyph.page = page;
+            glyph.srcX = (int) rect.x;
+            glyph.srcY = (int) rect.y;
+        }
+    }
+
+    /**
+     * Sort the glyphs tallest first, the missing glyph first of all, the order the generator renders them in.
+     */
+    private static void sortTallestFirst(Array<BitmapFont.Glyph> glyphs) {
+        glyphs.sort((a, b) -> a.id == 0 || b.id == 0 ? (a.id == 0 ? 0 : 1) - (b.id == 0 ? 0 : 1) : b.height - a.height);
+    }
+
+    /**
+     * @return the page size the generator would choose
+     */
+    private static int autoPageSize(Configuration config, float lineHeight) {
+        int size = FreeTypeFontGenerator.getMaxTextureSize();
+        if (!config.incremental) {
+            int maxGlyphHeight = (int) Math.ceil(lineHeight);
+            size = MathUtils.nextPowerOfTwo((int) Math.sqrt(maxGlyphHeight * maxGlyphHeight * config.characters.length()));
+            if (FreeTypeFontGenerator.getMaxTextureSize() > 0) size = Math.min(size, FreeTypeFontGenerator.getMaxTextureSize());
+        }
+        return size;
+    }
+
+    /**
+     * Drop the characters no face covers before rendering anything, the generator would only load the missing glyph
+     * for them and leave them out.
+     *
+     * @param uncovered receives the dropped codepoints
+     * @return the covered characters and the missing glyph
+     */
+    private static String coveredCharacters(FontFaceRegistry.FontFace fontFace, Array<FontFaceRegistry.FontFace> fallbackFaces, String characters,
+                                            IntArray uncovered) {
+        StringBuilder builder = new StringBuilder(characters.length());
+        for (int i = 0; i < characters.length(); ) {
+            int c = characters.codePointAt(i);
+            i += Character.charCount(c);
+            boolean covered = c == 0 || fontFace.covers(c);
+            for (int j = 0; j < fallbackFaces.size && !covered; j ++) covered = fallbackFaces.get(j).covers(c);
+            if (covered) builder.appendCodePoint(c);
+            else uncovered.add(c);
+        }
+        return uncovered.size == 0 ? characters : builder.toString();
+    }
+
+    private static String uncoveredReport(IntArray uncovered) {
+        return "Skipping " + uncovered.size + " characters not covered by the font: " + GlyphPlacement.ranges(uncovered);
+    }
+
+    /**
+     * Split the characters by the first face covering them, the input face gets the uncovered ones and the missing glyph.
+     *
+     * @return the characters of the input face followed by those of every fallback face
+     */
+    private static String[] fallbackSubsets(FontFaceRegistry.FontFace fontFace, Array<FontFaceRegistry.FontFace> fallbackFaces, String characters) {
+        StringBuilder[] builders = new StringBuilder[fallbackFaces.size + 1];
+        for (int i = 0; i < builders.length; i ++) builders[i] = new StringBuilder();
+        for (int i = 0; i < characters.length(); ) {
+            int c = characters.codePointAt(i);
+            i += Character.charCount(c);
+            int index = 0;
+            if (c != 0 && !fontFace.covers(c)) {
+                for (int j = 0; j < fallbackFaces.size; j ++) {
+                    if (fallbackFaces.get(j).covers(c)) {
+                        index = j + 1;
+                        break;
+                    }
+                }
+            }
+            builders[index].appendCodePoint(c);
+        }
+        String[] subsets = new String[builders.length];
+        for (int i = 0; i < subsets.length; i ++) subsets[i] = builders[i].toString();
+        verbose("Characters rendered from the input font: " + subsets[0].codePointCount(0, subsets[0].length()));
+        return subsets;
+    }
+
+    /**
+     * Add the glyphs of the fallback characters to the index, with y offsets rebased on the input font's baseline.
+     */
+    private static void mergeFallback(BitmapFont.BitmapFontData data, BitmapFont.BitmapFontData fallback, Array<BitmapFont.Glyph> glyphs, GlyphIndex index) {
+        boolean flip = data.flipped;
+        // The generator places glyphs relative to the face's ascender, recover it from the adjusted ascent.
+        float baseLine = flip ? data.capHeight - data.ascent : data.ascent + data.capHeight;
+        float fallbackBaseLine = flip ? fallback.capHeight - fallback.ascent : fallback.ascent + fallback.capHeight;
+        int offset = (int) fallbackBaseLine - (int) baseLine;
+        for (BitmapFont.Glyph glyph : glyphs) {
+            glyph.yoffset += flip ? -offset : offset;
+            index.put(glyph);
+        }
+    }
+
+    private static void checkConfig(Configuration config) {
+        if (config == null) exception("config cannot be null.");
+        if (!PageEncoder.supports(config.pageFormat)) exception("pageFormat is not supported.");
+        if (!PageQuantizer.supports(config.pageQuantization)) exception("pageQuantization is not supported.");
+        if (!PageEncoder.supports(config.pageFormat, config.pageQuantization)) exception("pageFormat " + config.pageFormat + " cannot be quantized.");
+        if (!GlyphPlacement.supports(config.placement)) exception("placement is not supported.");
+        if (config.kerningThreshold < 0) exception("kerningThreshold cannot be negative.");
+        if (config.fallbackFonts != null) {
+            for (FileHandle fallbackFont : config.fallbackFonts) {
+                if (fallbackFont == null) exception("fallbackFonts cannot contain null.");
+                if (!fallbackFont.exists() || fallbackFont.isDirectory()) exception("fallbackFont is not a regular file: " + fallbackFont.path());
+            }
+        }
+    }
+
+    private static String pageExtension(Configuration config) {
+        return PageEncoder.ktxFormat(config.pageFormat) == null ? ".png" : ".ktx";
+    }
+
+    /**
+     * Where the generated files are written, the files themselves or the entries of an archive.
+     */
+    private interface FileOutput {
+
+        /**
+         * @param file the generated file
+         * @return the output stream of the file, closed by the caller once the file is written
+         * @throws IOException if an I/O error occurs
+         */
+        OutputStream write(FileHandle file) throws IOException;
+
+    }
+
+    /**
+     * Encode the pages and write them one at a time, each page is released once written.
+     */
+    private static void processPages(Pixmap[] pages, FileHandle[] pageFiles, Configuration config, FileOutput output) throws IOException {
+        KtxWriter.Format format = PageEncoder.ktxFormat(config.pageFormat, config.pageQuantization);
+        if (format == null) {
+            PixmapIO.PNG png = new PixmapIO.PNG();
+            png.setFlipY(false);
+            try {
+                for (int i = 0; i < pages.length; i ++) {
+                    verbose("Rendering page [" + (i + 1) + "/" + pages.length + "]");
+                    Pixmap page = PageQuantizer.quantizes(config.pageQuantization) ? quantize(pages[i], config.pageQuantization) : pages[i];
+                    try (OutputStream pageOutput = output.write(pageFiles[i])) {
+                        png.write(pageOutput, page);
+                    }
+                    finally {
+                        if (page != pages[i]) page.dispose();
+                    }
+                }
+            }
+            finally {
+                png.dispose();
+            }
+            return;
         }
-        verbose("Generating .fnt file...");
-        processFnt(data, pageFiles, fntFile, config);
-        verbose("File generated successfully at: " + fntFile.path());
-        verbose("Cleaning up...");
-        bitmapFont.dispose();
-        verbose("Done.");
-        return ExitCode.SUCCESS;
+        warnAlphaOnly(config);
+        // Mip maps and compression are the expensive parts, pages are independent so encode them in parallel. Encoded
+        // pages are written in page order, so an archive always gets the same entries, and released once written.
+        byte[][][] levels = new byte[pages.length][][];
+        IntStream.range(0, pages.length).parallel().map(i -> {
+            verbose("Rendering page [" + (i + 1) + "/" + pages.length + "]");
+            levels[i] = encodeLevels(pages[i], config);
+            return i;
+        }).forEachOrdered(i -> {
+            try (OutputStream pageOutput = output.write(pageFiles[i])) {
+                KtxWriter.write(pageOutput, format, pages[i].getWidth(), pages[i].getHeight(), levels[i]);
+            } catch (IOException e) {
+                exception(e);
+            }
+            if (levels[i].length > 1) verbose(pageFiles[i].name() + " has " + levels[i].length + " mip levels");
+            levels[i] = null;
+        });
+    }
+
+    /**
+     * Encode the pages as the layers of one texture array file and write it, see {@link Configuration#pageArray}.
+     */
+    private static void processPageArray(Pixmap[] pages, FileHandle pageArrayFile, Configuration config, FileOutput output) throws IOException {
+        int width = pages[0].getWidth(), height = pages[0].getHeight();
+        for (int i = 1; i < pages.length; i ++) {
+            if (pages[i].getWidth() != width || pages[i].getHeight() != height)
+                exception("pageArray needs pages of the same size, page " + i + " is " + pages[i].getWidth() + "x" + pages[i].getHeight()
+                        + " instead of " + width + "x" + height + ".");
+        }
+        KtxWriter.Format format = PageEncoder.ktxFormat(config.pageFormat, config.pageQuantization);
+        if (format == null) {
+            // A png has no layers, the layer i is the rows from i * height of the stacked pages.
+            Pixmap stacked = new Pixmap(width, height * pages.length, Pixmap.Format.RGBA8888);
+            stacked.setBlending(Pixmap.Blending.None);
+            try {
+                for (int i = 0; i < pages.length; i ++) stacked.drawPixmap(pages[i], 0, i * height);
+                processPages(new Pixmap[] { stacked }, new FileHandle[] { pageArrayFile }, config, output);
+                return;
+            }
+            finally {
+                stacked.dispose();
+            }
+        }
+        warnAlphaOnly(config);
+        // Every layer is needed at once, the levels of a KTX array hold the images of all the layers.
+        byte[][][] levels = new byte[pages.length][][];
+        IntStream.range(0, pages.length).parallel().forEach(i -> {
+            verbose("Rendering layer [" + (i + 1) + "/" + pages.length + "]");
+            levels[i] = encodeLevels(pages[i], config);
+        });
+        byte[][][] images = new byte[levels[0].length][pages.length][];
+        for (int level = 0; level < images.length; level ++) {
+            for (int layer = 0; layer < pages.length; layer ++) images[level][layer] = levels[layer][level];
+        }
+        try (OutputStream pageArrayOutput = output.write(pageArrayFile)) {
+            KtxWriter.write(pageArrayOutput, format, width, height, pages.length, images);
+        }
+        if (images.length > 1) verbose(pageArrayFile.name() + " has " + images.length + " mip levels");
+    }
+
+    private static void warnAlphaOnly(Configuration config) {
+        if (PageEncoder.alphaOnly(config.pageFormat) && (config.borderWidth > 0 || config.shadowOffsetX != 0 || config.shadowOffsetY != 0))
+            error("Page format " + config.pageFormat + " keeps only the alpha channel, border and shadow colors are lost.");
+    }
+
+    /**
+     * Generate the optional mip maps of a page and encode them in a KTX based page format. The page is copied here, so
+     * when pages are encoded in parallel only the pages being encoded have a copy.
+     *
+     * @return the encoded levels
+     */
+    private static byte[][] encodeLevels(Pixmap page, Configuration config) {
+        int width = page.getWidth(), height = page.getHeight();
+        byte[] pixels = rgba8888(page);
+        byte[][] levels = config.genMipMaps ? MipMapGenerator.generate(pixels, width, height) : new byte[][] { pixels };
+        for (int level = 0; level < levels.length; level ++) {
+            levels[level] = PageEncoder.encode(config.pageFormat, config.pageQuantization, levels[level], Math.max(1, width >> level), Math.max(1, height >> level));
+        }
+        return levels;
+    }
+
+    /**
+     * @return a quantized RGBA8888 copy of the page
+     */
+    private static Pixmap quantize(Pixmap page, String quantization) {
+        byte[] rgba = rgba8888(page);
+        PageQuantizer.quantize(quantization, rgba, page.getWidth(), page.getHeight());
+        Pixmap quantized = new Pixmap(page.getWidth(), page.getHeight(), Pixmap.Format.RGBA8888);
+        ByteBuffer pixels = quantized.getPixels();
+        pixels.position(0);
+        pixels.put(rgba);
+        pixels.position(0);
+        return quantized;
     }
 
     private static void verbose(String message) {
         if (VERBOSE) Utils.verbose(TAG, message);
     }
 
+    private static void info(String message) {
+        Utils.info(TAG, message);
+    }
+
     private static void error(String message) {
         Utils.error(TAG, message);
     }
 
-    private static FreeTypeFontGenerator.FreeTypeFontParameter parameter(Configuration config) {
+    static FreeTypeFontGenerator.FreeTypeFontParameter parameter(Configuration config) {
         FreeTypeFontGenerator.FreeTypeFontParameter parameter = new FreeTypeFontGenerator.FreeTypeFontParameter();
         parameter.size = config.size;
         parameter.mono = config.mono;
@@ -308,6 +1239,21 @@ public class BitmapFontPacker {
         return parameter;
     }
 
+    private static byte[] processPageIndex(GlyphIndex index, FileHandle[] pageFiles) {
+        IntArray[] codepoints = new IntArray[pageFiles.length];
+        for (int i = 0; i < codepoints.length; i ++) codepoints[i] = new IntArray();
+        for (BitmapFont.Glyph glyph : index.sorted()) {
+            if (glyph.width == 0 || glyph.height == 0) continue;
+            if (glyph.page >= 0 && glyph.page < codepoints.length) codepoints[glyph.page].add(glyph.id);
+        }
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < pageFiles.length; i ++) {
+            buf.append("page id=").append(i).append(" file=\"").append(pageFiles[i].name()).append("\" glyphs=")
+                    .append(codepoints[i].size).append(" ranges=").append(GlyphPlacement.ranges(codepoints[i])).append("\n");
+        }
+        return buf.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
     /*******************************************************************************
      * Source https://github.com/libgdx/libgdx/blob/gdx-parent-1.10.0/extensions/gdx-tools/src/com/badlogic/gdx/tools/bmfont/BitmapFontWriter#WriteFont
      * AUTHORS file: https://github.com/libgdx/libgdx/blob/gdx-parent-1.10.0/AUTHORS
@@ -326,7 +1272,7 @@ public class BitmapFontPacker {
      * See the License for the specific language governing permissions and
      * limitations under the License.
      ******************************************************************************/
-    private static void processFnt (BitmapFont.BitmapFontData data, FileHandle[] pageFiles, FileHandle fntFile, Configuration config) {
+    private static byte[] processFnt (BitmapFont.BitmapFontData data, GlyphIndex index, FileHandle[] pageFiles, int scaleW, int scaleH, FileHandle fntFile, Configuration config) {
 
         String face = fntFile.nameWithoutExtension();
         int lineHeight = MathUtils.round(data.lineHeight);
@@ -378,7 +1324,7 @@ public class BitmapFontPacker {
 
         // COMMON line
         buf.append(xmlOpen).append("common lineHeight=").append(quote(xml, lineHeight)).append(" base=").append(quote(xml, base))
-                .append(" scaleW=").append(quote(xml, config.pageWidth)).append(" scaleH=").append(quote(xml, config.pageHeight))
+                .append(" scaleW=").append(quote(xml, scaleW)).append(" scaleH=").append(quote(xml, scaleH))
                 .append(" pages=").append(quote(xml, pageFiles.length)).append(" packed=").append(quote(xml, 0))
                 .append(alphaChnlParams).append(xmlCloseSelf).append("\n");
 
@@ -393,16 +1339,7 @@ public class BitmapFontPacker {
         if (xml) buf.append("\t</pages>\n");
 
         // CHARS
-        Array<BitmapFont.Glyph> glyphs = new Array<>(config.characters.length());
-        for (int i = 0; i < data.glyphs.length; i ++) {
-            if (data.glyphs[i] == null) continue;
-
-            for (int j = 0; j < data.glyphs[i].length; j ++) {
-                if (data.glyphs[i][j] != null) {
-                    glyphs.add(data.glyphs[i][j]);
-                }
-            }
-        }
+        Array<BitmapFont.Glyph> glyphs = index.sorted();
 
         buf.append(xmlOpen).append("chars count=").append(quote(xml, glyphs.size)).append(xmlClose).append("\n");
 
@@ -410,15 +1347,15 @@ public class BitmapFontPacker {
         for (int i = 0; i < glyphs.size; i++) {
             BitmapFont.Glyph g = glyphs.get(i);
             boolean empty = g.width == 0 || g.height == 0;
-            buf.append(xmlTab).append(xmlOpen).append("char id=").append(quote(xml, String.format("%-6s", g.id), true)).append("x=")
-                    .append(quote(xml, String.format("%-5s", empty ? 0 : g.srcX), true)).append("y=")
-                    .append(quote(xml, String.format("%-5s", empty ? 0 : g.srcY), true)).append("width=")
-                    .append(quote(xml, String.format("%-5s", empty ? 0 : g.width), true)).append("height=")
-                    .append(quote(xml, String.format("%-5s", empty ? 0 : g.height), true)).append("xoffset=")
-                    .append(quote(xml, String.format("%-5s", g.xoffset - config.padLeft), true)).append("yoffset=")
-                    .append(quote(xml, String.format("%-5s", data.flipped ? g.yoffset + config.padTop : -(g.height + (g.yoffset + config.padTop))), true))
-                    .append("xadvance=").append(quote(xml, String.format("%-5s", g.xadvance), true)).append("page=")
-                    .append(quote(xml, String.format("%-5s", g.page), true)).append("chnl=").append(quote(xml, 0, true)).append(xmlCloseSelf)
+            buf.append(xmlTab).append(xmlOpen).append("char id=").append(quote(xml, column(6, g.id), true)).append("x=")
+                    .append(quote(xml, column(5, empty ? 0 : g.srcX), true)).append("y=")
+                    .append(quote(xml, column(5, empty ? 0 : g.srcY), true)).append("width=")
+                    .append(quote(xml, column(5, empty ? 0 : g.width), true)).append("height=")
+                    .append(quote(xml, column(5, empty ? 0 : g.height), true)).append("xoffset=")
+                    .append(quote(xml, column(5, g.xoffset - config.padLeft), true)).append("yoffset=")
+                    .append(quote(xml, column(5, data.flipped ? g.yoffset + config.padTop : -(g.height + (g.yoffset + config.padTop))), true))
+                    .append("xadvance=").append(quote(xml, column(5, g.xadvance), true)).append("page=")
+                    .append(quote(xml, column(5, g.page), true)).append("chnl=").append(quote(xml, 0, true)).append(xmlCloseSelf)
                     .append("\n");
         }
 
@@ -428,16 +1365,22 @@ public class BitmapFontPacker {
         if (config.kerning) {
             int kernCount = 0;
             StringBuilder kernBuf = new StringBuilder();
+            IntIntMap pairs = new IntIntMap();
+            IntArray seconds = new IntArray();
             for (int i = 0; i < glyphs.size; i ++) {
-                for (int j = 0; j < glyphs.size; j ++) {
-                    BitmapFont.Glyph first = glyphs.get(i);
-                    BitmapFont.Glyph second = glyphs.get(j);
-                    int kern = first.getKerning((char)second.id);
-                    if (kern != 0) {
-                        kernCount ++;
-                        kernBuf.append(xmlTab).append(xmlOpen).append("kerning first=").append(quote(xml, first.id)).append(" second=")
-                                .append(quote(xml, second.id)).append(" amount=").append(quote(xml, kern, true)).append(xmlCloseSelf).append("\n");
-                    }
+                BitmapFont.Glyph first = glyphs.get(i);
+                if (index.getKernings(first, pairs) == 0) continue;
+                seconds.clear();
+                for (IntIntMap.Entry pair : pairs) {
+                    if (index.get(pair.key) != null) seconds.add(pair.key);
+                }
+                seconds.sort();
+                for (int j = 0; j < seconds.size; j ++) {
+                    int second = seconds.get(j);
+                    int kern = pairs.get(second, 0);
+                    kernCount ++;
+                    kernBuf.append(xmlTab).append(xmlOpen).append("kerning first=").append(quote(xml, first.id)).append(" second=")
+                            .append(quote(xml, second)).append(" amount=").append(quote(xml, kern, true)).append(xmlCloseSelf).append("\n");
                 }
             }
 
@@ -468,7 +1411,12 @@ public class BitmapFontPacker {
         String charset = config.charset;
         charset = charset == null ? null : (charset.length() == 0 ? null : charset);
 
-        fntFile.writeString(buf.toString(), false, charset);
+        try {
+            return charset == null ? buf.toString().getBytes() : buf.toString().getBytes(charset);
+        } catch (UnsupportedEncodingException e) {
+            exception(e);
+            return null;
+        }
     }
 
     /**
@@ -485,6 +1433,15 @@ public class BitmapFontPacker {
             Gdx.app.log(tag, message);
         }
 
+        /**
+         * Output an informative message, such as a summary of the process, even without verbose output.
+         * @param tag the tag
+         * @param message the message
+         */
+        default void info(String tag, String message) {
+            Gdx.app.log(tag, message);
+        }
+
         /**
          * Output an error message.
          * @param tag the tag
@@ -517,6 +1474,16 @@ public class BitmapFontPacker {
         static boolean stringNotEmpty(String s) {
             return s != null && s.length() > 0;
         }
+        /**
+         * Pad the value to the column width, values wider than the column, like supplementary codepoints, still end
+         * with a separator.
+         */
+        static String column(int width, Object value) {
+            String string = value.toString();
+            StringBuilder column = new StringBuilder(Math.max(width, string.length() + 1)).append(string);
+            do column.append(' '); while (column.length() < width);
+            return column.toString();
+        }
         /*******************************************************************************
          * Source: https://github.com/libgdx/libgdx/blob/gdx-parent-1.10.0/extensions/gdx-tools/src/com/badlogic/gdx/tools/bmfont/BitmapFontWriter#quote
          * AUTHORS file: https://github.com/libgdx/libgdx/blob/gdx-parent-1.10.0/AUTHORS
@@ -542,23 +1509,55 @@ public class BitmapFontPacker {
             if (xml) return "\"" + param.toString().trim() + "\"" + (spaceAfter ? " " : "");
             return param.toString();
         }
+        static byte[] rgba8888(Pixmap pixmap) {
+            Pixmap converted = null;
+            if (pixmap.getFormat() != Pixmap.Format.RGBA8888) {
+                converted = new Pixmap(pixmap.getWidth(), pixmap.getHeight(), Pixmap.Format.RGBA8888);
+                converted.setBlending(Pixmap.Blending.None);
+                converted.drawPixmap(pixmap, 0, 0);
+                pixmap = converted;
+            }
+            ByteBuffer pixels = pixmap.getPixels();
+            byte[] bytes = new byte[pixmap.getWidth() * pixmap.getHeight() * 4];
+            pixels.position(0);
+            pixels.get(bytes);
+            pixels.position(0);
+            if (converted != null) converted.dispose();
+            return bytes;
+        }
         static String readCharsFromFiles(FileHandle... files) {
             return readCharsFromFiles(null, files);
         }
         static String readCharsFromFiles(String charset, FileHandle... files) {
+            return removeDuplicateChars(readTextFromFiles(charset, files));
+        }
+        static String readTextFromFiles(String charset, FileHandle... files) {
             StringBuilder builder = new StringBuilder();
             for (FileHandle file : files) {
-                if (file.isDirectory()) builder.append(readCharsFromFiles(charset, file.list()));
+                if (file.isDirectory()) builder.append(readTextFromFiles(charset, file.list()));
                 else builder.append(file.readString(charset));
             }
-            return removeDuplicateChars(builder.toString());
+            return builder.toString();
         }
         static String removeDuplicateChars(String string) {
-            return Arrays.stream(string.split("")).distinct().collect(Collectors.joining());
+            int[] codepoints = string.codePoints().distinct().toArray();
+            return new String(codepoints, 0, codepoints.length);
+        }
+        static IntArray codepoints(String string) {
+            IntArray codepoints = new IntArray(string.length());
+            for (int i = 0; i < string.length(); ) {
+                int codepoint = string.codePointAt(i);
+                codepoints.add(codepoint);
+                i += Character.charCount(codepoint);
+            }
+            return codepoints;
         }
         static void verbose(String tag, String message) {
             platformSupport.verbose(tag, message);
         }
+        static void info(String tag, String message) {
+            platformSupport.info(tag, message);
+        }
         static void error(String tag, String message) {
             platformSupport.error(tag, message);
         }
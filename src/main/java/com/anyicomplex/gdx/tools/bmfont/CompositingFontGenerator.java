@@ -0,0 +1,399 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeType;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.reflect.ClassReflection;
+import com.badlogic.gdx.utils.reflect.Field;
+import com.badlogic.gdx.utils.reflect.ReflectionException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static com.anyicomplex.gdx.tools.bmfont.BitmapFontPacker.Utils.rgba8888;
+
+/**
+ * <p>{@link FreeTypeFontGenerator} compositing the glyph, border and shadow layers of a glyph in a single pass.</p>
+ * <p>The generator draws the glyph over its border, then the result over its shadow,
+ * {@link FreeTypeFontGenerator.FreeTypeFontParameter#renderCount} times each with Pixmap blits, and copies the result
+ * into a padded Pixmap. This generator rasterizes every layer once into int arrays and writes each texel of the padded
+ * glyph bitmap once: repeating gdx2d's source-over blend on a texel converges after a few steps, so it is repeated per
+ * texel only until the texel stops changing. The bitmaps are identical to the generator's.</p>
+ * <p>Only glyphs collected by a {@link GlyphCollector} are composited, and their bitmaps are handed over without the
+ * collector's copy. Other packers and bitmap fonts go through the generator's own path.</p>
+ * @author Yi An
+ *
+ */
+class CompositingFontGenerator extends FreeTypeFontGenerator {
+
+    private final FreeType.Library library;
+    private final FreeType.Face face;
+    private final boolean bitmapped;
+    /** Scratch layers reused between glyphs, the generator is used by one thread at a time. */
+    private int[] mainTexels = new int[0], borderTexels = new int[0], imageTexels = new int[0];
+
+    CompositingFontGenerator(FileHandle fontFile, int faceIndex) {
+        super(fontFile, faceIndex);
+        FreeType.Library library = null;
+        FreeType.Face face = null;
+        boolean bitmapped = true;
+        try {
+            Field libraryField = ClassReflection.getDeclaredField(FreeTypeFontGenerator.class, "library");
+            libraryField.setAccessible(true);
+            library = (FreeType.Library) libraryField.get(this);
+            Field faceField = ClassReflection.getDeclaredField(FreeTypeFontGenerator.class, "face");
+            faceField.setAccessible(true);
+            face = (FreeType.Face) faceField.get(this);
+            Field bitmappedField = ClassReflection.getDeclaredField(FreeTypeFontGenerator.class, "bitmapped");
+            bitmappedField.setAccessible(true);
+            bitmapped = (Boolean) bitmappedField.get(this);
+        } catch (ReflectionException ignored) {
+        }
+        this.library = library;
+        this.face = face;
+        this.bitmapped = bitmapped;
+    }
+
+    /**
+     * @return the FreeType face of this generator, null if not accessible
+     */
+    FreeType.Face getFace() {
+        return face;
+    }
+
+    @Override
+    protected BitmapFont.Glyph createGlyph(char c, FreeTypeBitmapFontData data, FreeTypeFontParameter parameter, FreeType.Stroker stroker,
+                                           float baseLine, PixmapPacker packer) {
+        if (face == null || bitmapped || !(packer instanceof GlyphCollector)) return super.createGlyph(c, data, parameter, stroker, baseLine, packer);
+        return createGlyph(c, parameter, stroker, baseLine, (GlyphCollector) packer);
+    }
+
+    /**
+     * Render the glyphs of codepoints the generator's char based API can't reach, like supplementary codepoints. Should
+     * be called while holding the lock of the face, right after
+     * {@link #generateData(FreeTypeFontParameter, FreeTypeBitmapFontData)} set the size of the face with the same
+     * parameter.
+     *
+     * @param codepoints the codepoints
+     * @param parameter the parameter the data was generated with
+     * @param data the generated data
+     * @param collector receives the glyph bitmaps
+     * @return the rendered glyphs, without the codepoints the face doesn't cover or bitmap fonts
+     */
+    Array<BitmapFont.Glyph> createGlyphs(IntArray codepoints, FreeTypeFontParameter parameter, FreeTypeBitmapFontData data, GlyphCollector collector) {
+        Array<BitmapFont.Glyph> glyphs = new Array<>(codepoints.size);
+        if (face == null || library == null || bitmapped || codepoints.size == 0) return glyphs;
+        // The generator places glyphs relative to the face's ascender, recover it from the adjusted ascent.
+        float baseLine = data.flipped ? data.capHeight - data.ascent : data.ascent + data.capHeight;
+        FreeType.Stroker stroker = null;
+        if (parameter.borderWidth > 0) {
+            stroker = library.createStroker();
+            stroker.set((int) (parameter.borderWidth * 64f), parameter.borderStraight ? FreeType.FT_STROKER_LINECAP_BUTT : FreeType.FT_STROKER_LINECAP_ROUND,
+                    parameter.borderStraight ? FreeType.FT_STROKER_LINEJOIN_MITER_FIXED : FreeType.FT_STROKER_LINEJOIN_ROUND, 0);
+        }
+        try {
+            for (int i = 0; i < codepoints.size; i ++) {
+                BitmapFont.Glyph glyph = createGlyph(codepoints.get(i), parameter, stroker, baseLine, collector);
+                if (glyph != null) glyphs.add(glyph);
+            }
+        }
+        finally {
+            if (stroker != null) stroker.dispose();
+        }
+        return glyphs;
+    }
+
+    /**
+     * Measure the glyph bitmaps of the codepoints from their hinted outline metrics, without rendering them. The border
+     * grows the outline box by the border width on every side, then the shadow offset and the padding are added like
+     * the glyphs are composited, so the rendered bitmaps are within a few texels of the measured sizes. Should be called
+     * while holding the lock of the face.
+     *
+     * @param codepoints the codepoints
+     * @param parameter the parameter the glyphs would be generated with
+     * @return the glyphs with their id and bitmap size, without the codepoints the face doesn't cover, null for bitmap
+     *         fonts, which have no outline to measure
+     */
+    Array<BitmapFont.Glyph> measureGlyphs(IntArray codepoints, FreeTypeFontParameter parameter) {
+        if (face == null || bitmapped || !face.setPixelSizes(0, parameter.size)) return null;
+        Array<BitmapFont.Glyph> glyphs = new Array<>(codepoints.size);
+        int flags = loadingFlags(parameter);
+        int border = parameter.borderWidth > 0 ? (int) (parameter.borderWidth * 64f) : 0;
+        boolean pad = parameter.padTop > 0 || parameter.padLeft > 0 || parameter.padBottom > 0 || parameter.padRight > 0;
+        int padWidth = pad ? parameter.padLeft + parameter.padRight : 0, padHeight = pad ? parameter.padTop + parameter.padBottom : 0;
+        for (int i = 0; i < codepoints.size; i ++) {
+            int c = codepoints.get(i);
+            if (face.getCharIndex(c) == 0 && c != 0) continue;
+            if (!face.loadChar(c, flags)) continue;
+            FreeType.GlyphMetrics metrics = face.getGlyph().getMetrics();
+            BitmapFont.Glyph glyph = new BitmapFont.Glyph();
+            glyph.id = c;
+            if (metrics.getWidth() > 0 && metrics.getHeight() > 0) {
+                // 26.6 fixed point outline box, rendered bitmaps cover it with whole texels.
+                int left = metrics.getHoriBearingX() - border, right = metrics.getHoriBearingX() + metrics.getWidth() + border;
+                int top = metrics.getHoriBearingY() + border, bottom = metrics.getHoriBearingY() - metrics.getHeight() - border;
+                glyph.width = ((right + 63) >> 6) - (left >> 6) + Math.abs(parameter.shadowOffsetX) + padWidth;
+                glyph.height = ((top + 63) >> 6) - (bottom >> 6) + Math.abs(parameter.shadowOffsetY) + padHeight;
+            }
+            glyph.xadvance = FreeType.toInt(metrics.getHoriAdvance()) + (int) parameter.borderWidth + parameter.spaceX;
+            glyphs.add(glyph);
+        }
+        return glyphs;
+    }
+
+    /**
+     * @param parameter the parameter the glyphs would be generated with
+     * @return the line height the generator would set, 0 for bitmap fonts. Should be called while holding the lock of
+     *         the face.
+     */
+    float measureLineHeight(FreeTypeFontParameter parameter) {
+        if (face == null || bitmapped || !face.setPixelSizes(0, parameter.size)) return 0;
+        return FreeType.toInt(face.getSize().getMetrics().getHeight()) + parameter.spaceY;
+    }
+
+    /**
+     * @param parameter the parameter the glyphs would be generated with
+     * @return the largest advance of the glyphs of the face in pixels, 0 for bitmap fonts. Should be called while
+     *         holding the lock of the face.
+     */
+    int measureMaxAdvance(FreeTypeFontParameter parameter) {
+        if (face == null || bitmapped || !face.setPixelSizes(0, parameter.size)) return 0;
+        return FreeType.toInt(face.getSize().getMetrics().getMaxAdvance());
+    }
+
+    private BitmapFont.Glyph createGlyph(int c, FreeTypeFontParameter parameter, FreeType.Stroker stroker, float baseLine, GlyphCollector collector) {
+        if (face.getCharIndex(c) == 0 && c != 0) return null;
+        if (!face.loadChar(c, loadingFlags(parameter))) return null;
+        int renderMode = parameter.mono ? FreeType.FT_RENDER_MODE_MONO : FreeType.FT_RENDER_MODE_NORMAL;
+        FreeType.GlyphSlot slot = face.getGlyph();
+        FreeType.Glyph mainGlyph = slot.getGlyph();
+        try {
+            mainGlyph.toBitmap(renderMode);
+        } catch (GdxRuntimeException e) {
+            mainGlyph.dispose();
+            Gdx.app.log("FreeTypeFontGenerator", "Couldn't render char: " + new String(Character.toChars(c)));
+            return null;
+        }
+        FreeType.Glyph borderGlyph = null;
+        try {
+            FreeType.Bitmap mainBitmap = mainGlyph.getBitmap();
+            int width = mainBitmap.getWidth(), height = mainBitmap.getRows();
+            int left = mainGlyph.getLeft(), top = mainGlyph.getTop();
+            Pixmap image = null;
+            if (width != 0 && height != 0) {
+                int[] base = mainTexels = texels(mainBitmap, parameter.color, parameter.gamma, mainTexels);
+                boolean shadow = parameter.shadowOffsetX != 0 || parameter.shadowOffsetY != 0;
+                if (parameter.borderWidth > 0) {
+                    borderGlyph = slot.getGlyph();
+                    borderGlyph.strokeBorder(stroker, false);
+                    borderGlyph.toBitmap(renderMode);
+                    FreeType.Bitmap borderBitmap = borderGlyph.getBitmap();
+                    int[] border = borderTexels = texels(borderBitmap, parameter.borderColor, parameter.borderGamma, borderTexels);
+                    drawOver(base, width, height, border, borderBitmap.getWidth(), borderBitmap.getRows(),
+                            left - borderGlyph.getLeft(), borderGlyph.getTop() - top, parameter.renderCount);
+                    base = border;
+                    width = borderBitmap.getWidth();
+                    height = borderBitmap.getRows();
+                    left = borderGlyph.getLeft();
+                    top = borderGlyph.getTop();
+                }
+                else if (!shadow) {
+                    for (int i = 0, n = width * height; i < n; i ++) base[i] = overSelf(base[i], parameter.renderCount - 1);
+                }
+                boolean pad = parameter.padTop > 0 || parameter.padLeft > 0 || parameter.padBottom > 0 || parameter.padRight > 0;
+                int padTop = pad ? parameter.padTop : 0, padLeft = pad ? parameter.padLeft : 0;
+                int contentWidth = width + Math.abs(parameter.shadowOffsetX), contentHeight = height + Math.abs(parameter.shadowOffsetY);
+                int imageWidth = contentWidth + (pad ? padLeft + parameter.padRight : 0);
+                int imageHeight = contentHeight + (pad ? padTop + parameter.padBottom : 0);
+                int imageSize = imageWidth * imageHeight;
+                if (imageTexels.length < imageSize) imageTexels = new int[imageSize];
+                int[] texels = imageTexels;
+                if (pad || shadow) Arrays.fill(texels, 0, imageSize, 0);
+                if (shadow) composite(base, width, height, parameter, texels, imageWidth, imageHeight, padLeft, padTop, contentWidth, contentHeight);
+                else copy(base, width, height, texels, imageWidth, imageHeight, padLeft, padTop);
+                width = imageWidth;
+                height = imageHeight;
+                image = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+                image.setBlending(Pixmap.Blending.None);
+                ByteBuffer pixels = image.getPixels();
+                pixels.duplicate().asIntBuffer().put(texels, 0, imageSize);
+            }
+            BitmapFont.Glyph glyph = new BitmapFont.Glyph();
+            glyph.id = c;
+            glyph.width = width;
+            glyph.height = height;
+            glyph.xoffset = left;
+            glyph.yoffset = parameter.flip ? -top + (int) baseLine : -(height - top) - (int) baseLine;
+            glyph.xadvance = FreeType.toInt(slot.getMetrics().getHoriAdvance()) + (int) parameter.borderWidth + parameter.spaceX;
+            glyph.page = -1;
+            glyph.srcX = collector.add(image);
+            glyph.srcY = 0;
+            return glyph;
+        }
+        finally {
+            mainGlyph.dispose();
+            if (borderGlyph != null) borderGlyph.dispose();
+        }
+    }
+
+    /**
+     * Draw the base layer over its shadow into the padded image, texel by texel.
+     */
+    private static void composite(int[] base, int width, int height, FreeTypeFontParameter parameter, int[] texels, int imageWidth,
+                                  int imageHeight, int padLeft, int padTop, int contentWidth, int contentHeight) {
+        Color shadowColor = parameter.shadowColor;
+        float shadowAlpha = shadowColor.a;
+        int shadowRGB = ((int) (shadowColor.r * 255) & 0xFF) << 24 | ((int) (shadowColor.g * 255) & 0xFF) << 16
+                | ((int) (shadowColor.b * 255) & 0xFF) << 8;
+        int shadowX = Math.max(parameter.shadowOffsetX, 0), shadowY = Math.max(parameter.shadowOffsetY, 0);
+        int baseX = Math.max(-parameter.shadowOffsetX, 0), baseY = Math.max(-parameter.shadowOffsetY, 0);
+        int renderCount = parameter.renderCount;
+        for (int y = Math.max(0, -padTop), yEnd = Math.min(contentHeight, imageHeight - padTop); y < yEnd; y ++) {
+            int row = (y + padTop) * imageWidth + padLeft;
+            for (int x = Math.max(0, -padLeft), xEnd = Math.min(contentWidth, imageWidth - padLeft); x < xEnd; x ++) {
+                int texel = 0;
+                int sx = x - shadowX, sy = y - shadowY;
+                if (shadowAlpha != 0 && sx >= 0 && sy >= 0 && sx < width && sy < height) {
+                    int alpha = base[sy * width + sx] & 0xFF;
+                    if (alpha != 0) texel = shadowRGB | ((int) (alpha * shadowAlpha) & 0xFF);
+                }
+                int bx = x - baseX, by = y - baseY;
+                if (bx >= 0 && by >= 0 && bx < width && by < height) texel = over(base[by * width + bx], texel, renderCount);
+                texels[row + x] = texel;
+            }
+        }
+    }
+
+    /**
+     * Copy the base layer into the padded image.
+     */
+    private static void copy(int[] base, int width, int height, int[] texels, int imageWidth, int imageHeight, int padLeft, int padTop) {
+        for (int y = Math.max(0, -padTop), yEnd = Math.min(height, imageHeight - padTop); y < yEnd; y ++) {
+            int xStart = Math.max(0, -padLeft), xEnd = Math.min(width, imageWidth - padLeft);
+            if (xEnd > xStart) System.arraycopy(base, y * width + xStart, texels, (y + padTop) * imageWidth + padLeft + xStart, xEnd - xStart);
+        }
+    }
+
+    /**
+     * Draw the source layer over the destination layer at the offset, renderCount times, clipped like a Pixmap blit.
+     */
+    private static void drawOver(int[] src, int srcWidth, int srcHeight, int[] dst, int dstWidth, int dstHeight, int offsetX, int offsetY, int renderCount) {
+        for (int y = Math.max(0, -offsetY), yEnd = Math.min(srcHeight, dstHeight - offsetY); y < yEnd; y ++) {
+            int srcRow = y * srcWidth, dstRow = (y + offsetY) * dstWidth + offsetX;
+            for (int x = Math.max(0, -offsetX), xEnd = Math.min(srcWidth, dstWidth - offsetX); x < xEnd; x ++) {
+                dst[dstRow + x] = over(src[srcRow + x], dst[dstRow + x], renderCount);
+            }
+        }
+    }
+
+    /**
+     * Blend the source texel over the destination texel count times, like drawing a Pixmap over another count times.
+     */
+    static int over(int src, int dst, int count) {
+        for (int i = 0; i < count; i ++) {
+            int blended = over(src, dst);
+            if (blended == dst) break;
+            dst = blended;
+        }
+        return dst;
+    }
+
+    /**
+     * Blend the texel over itself count times, like drawing a Pixmap over itself count times.
+     */
+    static int overSelf(int texel, int count) {
+        for (int i = 0; i < count; i ++) {
+            int blended = over(texel, texel);
+            if (blended == texel) break;
+            texel = blended;
+        }
+        return texel;
+    }
+
+    /**
+     * gdx2d's source-over blend of non premultiplied RGBA8888 texels.
+     */
+    static int over(int src, int dst) {
+        int srcA = src & 0xFF;
+        if (srcA == 0) return dst;
+        int dstA = dst & 0xFF;
+        dstA -= dstA * srcA / 255;
+        int a = dstA + srcA;
+        int r = ((dst >>> 24) * dstA + (src >>> 24) * srcA) / a;
+        int g = ((dst >>> 16 & 0xFF) * dstA + (src >>> 16 & 0xFF) * srcA) / a;
+        int b = ((dst >>> 8 & 0xFF) * dstA + (src >>> 8 & 0xFF) * srcA) / a;
+        return r << 24 | g << 16 | b << 8 | a;
+    }
+
+    /**
+     * Rasterize a layer like the generator does.
+     *
+     * @param texels the scratch array to reuse if large enough
+     * @return the layer texels, row by row
+     */
+    private static int[] texels(FreeType.Bitmap bitmap, Color color, float gamma, int[] texels) {
+        Pixmap pixmap = bitmap.getPixmap(Pixmap.Format.RGBA8888, color, gamma);
+        int size = pixmap.getWidth() * pixmap.getHeight();
+        if (texels.length < size) texels = new int[size];
+        if (pixmap.getFormat() == Pixmap.Format.RGBA8888) pixmap.getPixels().duplicate().asIntBuffer().get(texels, 0, size);
+        else ByteBuffer.wrap(rgba8888(pixmap)).asIntBuffer().get(texels, 0, size);
+        pixmap.dispose();
+        return texels;
+    }
+
+    /**
+     * The generator's loading flags of the hinting.
+     */
+    private static int loadingFlags(FreeTypeFontParameter parameter) {
+        int loadingFlags = FreeType.FT_LOAD_DEFAULT;
+        switch (parameter.hinting) {
+            case None:
+                loadingFlags |= FreeType.FT_LOAD_NO_HINTING;
+                break;
+            case Slight:
+                loadingFlags |= FreeType.FT_LOAD_TARGET_LIGHT;
+                break;
+            case Medium:
+                loadingFlags |= FreeType.FT_LOAD_TARGET_NORMAL;
+                break;
+            case Full:
+                loadingFlags |= FreeType.FT_LOAD_TARGET_MONO;
+                break;
+            case AutoSlight:
+                loadingFlags |= FreeType.FT_LOAD_FORCE_AUTOHINT | FreeType.FT_LOAD_TARGET_LIGHT;
+                break;
+            case AutoMedium:
+                loadingFlags |= FreeType.FT_LOAD_FORCE_AUTOHINT | FreeType.FT_LOAD_TARGET_NORMAL;
+                break;
+            case AutoFull:
+                loadingFlags |= FreeType.FT_LOAD_FORCE_AUTOHINT | FreeType.FT_LOAD_TARGET_MONO;
+                break;
+        }
+        return loadingFlags;
+    }
+
+}
@@ -0,0 +1,480 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntSet;
+
+import static com.anyicomplex.gdx.tools.bmfont.BitmapFontPacker.Utils.exception;
+
+/**
+ * <p>Runtime glyph atlas for unbounded character sets, such as user chat.</p>
+ * <p>The atlas is seeded from a BitmapFont generated by {@link BitmapFontPacker} (PNG pages), those glyphs are pinned.
+ * Characters missing from the seed are rasterized on demand from the font face into fixed-size cells on up to
+ * {@code maxPages} dynamic pages; when all cells are used, the least recently used dynamic glyph is evicted, so the
+ * memory is bounded.</p>
+ * <p>Glyphs are looked up through {@link #getData()}, which can back a {@link BitmapFont} created by {@link #newFont()}.
+ * Cached layouts (eg. {@link com.badlogic.gdx.graphics.g2d.BitmapFontCache}) keep the glyphs they were built with,
+ * so they should be rebuilt when {@link #getEvictions()} changes.</p>
+ * <p><b>NOTE the atlas is not thread safe, textures must be used on the GL thread.</b></p>
+ * @author Yi An
+ *
+ */
+public class DynamicGlyphAtlas implements Disposable {
+
+    /** The log tag. */
+    public static final String TAG = "DynamicGlyphAtlas";
+
+    /** Same as {@link BitmapFont}'s glyph page size. */
+    private static final int LOG2_PAGE_SIZE = 9;
+
+    private final FontFaceRegistry.FontFace fontFace;
+    private final BitmapFontPacker.Configuration config;
+    private final AtlasData data;
+    private final Array<Pixmap> pages = new Array<>();
+    private final int seededPages;
+    private final int pageWidth, pageHeight, cellWidth, cellHeight, columns, cellsPerPage, maxPages;
+    private final Color transparentColor;
+    private Pixmap cellPixmap;
+    private Array<TextureRegion> regions;
+
+    /** Codepoint of the glyph in each cell, -1 if free. */
+    private final int[] cellGlyphs;
+    /** Least recently used list of the used cells. */
+    private final int[] previous, next;
+    private int head = -1, tail = -1;
+    private final IntIntMap cells = new IntIntMap();
+    private final IntArray freeCells = new IntArray();
+    private final IntSet uncovered = new IntSet();
+    /** Characters whose glyph is larger than a cell. */
+    private final IntSet oversized = new IntSet();
+
+    private long hits, misses, evictions;
+
+    /**
+     * @param fontFace the face the font was generated from, acquired by the caller
+     * @param fntFile the generated .fnt file with PNG pages, null to start without seed glyphs, from a first empty dynamic
+     *                page
+     * @param config the configuration the font was generated with
+     * @param pageSize the size of the dynamic pages, -1 to use the seed's page size
+     * @param maxPages the maximum amount of dynamic pages
+     */
+    public DynamicGlyphAtlas(FontFaceRegistry.FontFace fontFace, FileHandle fntFile, BitmapFontPacker.Configuration config, int pageSize, int maxPages) {
+        if (fontFace == null) exception("fontFace cannot be null.");
+        if (config == null) exception("config cannot be null.");
+        if (maxPages < 1) exception("maxPages must be positive.");
+        this.fontFace = fontFace;
+        this.config = config;
+        this.maxPages = maxPages;
+        transparentColor = new Color(config.borderWidth > 0 ? config.borderColor : config.color);
+        transparentColor.a = 0;
+        if (fntFile != null) {
+            data = new AtlasData(fntFile, config.flip);
+            for (String imagePath : data.getImagePaths()) {
+                FileHandle pageFile = fntFile.sibling(new FileHandle(imagePath).name());
+                if (!pageFile.extension().equalsIgnoreCase("png")) exception("Only PNG pages can be seeded: " + pageFile.name());
+                Pixmap page = new Pixmap(pageFile);
+                page.setBlending(Pixmap.Blending.None);
+                pages.add(page);
+            }
+        }
+        else {
+            data = new AtlasData();
+            seedMetrics();
+        }
+        seededPages = pages.size;
+        if (pageSize == -1) pageSize = pages.size > 0 ? Math.max(pages.first().getWidth(), pages.first().getHeight()) : 512;
+        pageWidth = pageHeight = pageSize;
+        int maxAdvance;
+        synchronized (fontFace) {
+            maxAdvance = fontFace.getCompositingGenerator().measureMaxAdvance(BitmapFontPacker.parameter(config));
+        }
+        // Fits the widest and the tallest glyphs of the font with their border and shadow, plus one pixel between cells.
+        int glyphHeight = (int) Math.ceil(data.lineHeight), glyphWidth = Math.max(glyphHeight, maxAdvance);
+        int border = (int) Math.ceil(config.borderWidth * 2);
+        cellWidth = glyphWidth + border + Math.abs(config.shadowOffsetX) + config.padLeft + config.padRight + 1;
+        cellHeight = glyphHeight + border + Math.abs(config.shadowOffsetY) + config.padTop + config.padBottom + 1;
+        columns = pageWidth / cellWidth;
+        cellsPerPage = columns * (pageHeight / cellHeight);
+        if (cellsPerPage == 0) exception("pageSize too small for the glyphs.");
+        int cellCount = cellsPerPage * maxPages;
+        cellGlyphs = new int[cellCount];
+        previous = new int[cellCount];
+        next = new int[cellCount];
+        // The font needs a page, even before the first glyph is rasterized.
+        if (seededPages == 0) addPage();
+        data.atlas = this;
+    }
+
+    /**
+     * Take the metrics of the font from the generator, for atlases without seed.
+     */
+    private void seedMetrics() {
+        GlyphCollector collector = new GlyphCollector();
+        FreeTypeFontGenerator.FreeTypeBitmapFontData generated = new FreeTypeFontGenerator.FreeTypeBitmapFontData();
+        try {
+            FreeTypeFontGenerator.FreeTypeFontParameter parameter = BitmapFontPacker.parameter(config);
+            parameter.characters = "";
+            parameter.kerning = false;
+            parameter.incremental = false;
+            parameter.packer = collector;
+            synchronized (fontFace) {
+                fontFace.getGenerator().generateData(parameter, generated);
+            }
+            data.flipped = generated.flipped;
+            data.lineHeight = generated.lineHeight;
+            data.ascent = generated.ascent;
+            data.descent = generated.descent;
+            data.down = generated.down;
+            data.capHeight = generated.capHeight;
+            data.xHeight = generated.xHeight;
+            data.spaceXadvance = generated.spaceXadvance;
+            data.padTop = config.padTop;
+            data.padLeft = config.padLeft;
+            data.padBottom = config.padBottom;
+            data.padRight = config.padRight;
+            BitmapFont.Glyph space = generated.getGlyph(' ');
+            if (space != null) {
+                space.xoffset -= config.padLeft;
+                space.yoffset += config.padTop;
+                data.setGlyph(' ', space);
+            }
+        }
+        finally {
+            generated.dispose();
+            collector.dispose();
+        }
+    }
+
+    /**
+     * Look up a glyph, rasterizing it if needed.
+     *
+     * @param ch the character
+     * @return the glyph, or the missing glyph (may be null) if the face doesn't cover the character or the glyph doesn't
+     * fit a cell, which is reported as an error
+     */
+    public BitmapFont.Glyph getGlyph(char ch) {
+        BitmapFont.Glyph glyph = data.getResidentGlyph(ch);
+        if (glyph != null) {
+            hits ++;
+            int cell = cells.get(ch, -1);
+            if (cell != -1) {
+                unlink(cell);
+                link(cell);
+            }
+            return glyph;
+        }
+        misses ++;
+        if (uncovered.contains(ch) || oversized.contains(ch)) return data.missingGlyph;
+        glyph = rasterize(ch);
+        return glyph == null ? data.missingGlyph : glyph;
+    }
+
+    private BitmapFont.Glyph rasterize(char ch) {
+        GlyphCollector collector = new GlyphCollector();
+        FreeTypeFontGenerator.FreeTypeBitmapFontData generated = new FreeTypeFontGenerator.FreeTypeBitmapFontData();
+        try {
+            FreeTypeFontGenerator.FreeTypeFontParameter parameter = BitmapFontPacker.parameter(config);
+            parameter.characters = String.valueOf(ch);
+            parameter.kerning = false;
+            parameter.incremental = false;
+            parameter.packer = collector;
+            BitmapFont.Glyph glyph;
+            synchronized (fontFace) {
+                fontFace.getGenerator().generateData(parameter, generated);
+                glyph = generated.getGlyph(ch);
+                if (glyph == null || !collector.collected(glyph)) {
+                    uncovered.add(ch);
+                    return null;
+                }
+                // The face is still at the font size, like the generator's incremental path does.
+                if (config.kerning && fontFace.hasKerning()) kerning(glyph);
+            }
+            // Same offsets as the glyphs parsed from the .fnt file.
+            glyph.xoffset -= config.padLeft;
+            glyph.yoffset += config.padTop;
+            Pixmap image = collector.getImage(glyph);
+            if (image == null) {
+                glyph.page = 0;
+                glyph.srcX = 0;
+                glyph.srcY = 0;
+            }
+            else if (image.getWidth() >= cellWidth || image.getHeight() >= cellHeight) {
+                oversized.add(ch);
+                error("Glyph U+" + Integer.toHexString(ch).toUpperCase() + " is " + image.getWidth() + "x" + image.getHeight()
+                        + ", larger than the " + (cellWidth - 1) + "x" + (cellHeight - 1) + " cells, the missing glyph is used instead.");
+                return null;
+            }
+            else place(glyph, image);
+            data.setGlyph(ch, glyph);
+            return glyph;
+        }
+        finally {
+            generated.dispose();
+            collector.dispose();
+        }
+    }
+
+    private void kerning(BitmapFont.Glyph glyph) {
+        int glyphIndex = fontFace.getCharIndex(glyph.id);
+        for (BitmapFont.Glyph[] page : data.glyphs) {
+            if (page == null) continue;
+            for (BitmapFont.Glyph other : page) {
+                if (other == null) continue;
+                int otherIndex = fontFace.getCharIndex(other.id);
+                int kerning = fontFace.getKerning(glyphIndex, otherIndex);
+                if (kerning != 0) glyph.setKerning(other.id, kerning);
+                kerning = fontFace.getKerning(otherIndex, glyphIndex);
+                if (kerning != 0) other.setKerning(glyph.id, kerning);
+            }
+        }
+    }
+
+    private void place(BitmapFont.Glyph glyph, Pixmap image) {
+        int cell = allocateCell();
+        int page = seededPages + cell / cellsPerPage, slot = cell % cellsPerPage;
+        int x = slot % columns * cellWidth, y = slot / columns * cellHeight;
+        if (cellPixmap == null) {
+            cellPixmap = new Pixmap(cellWidth - 1, cellHeight - 1, Pixmap.Format.RGBA8888);
+            cellPixmap.setBlending(Pixmap.Blending.None);
+        }
+        // Clear the previous glyph of the cell too.
+        cellPixmap.setColor(transparentColor);
+        cellPixmap.fill();
+        cellPixmap.drawPixmap(image, 0, 0);
+        pages.get(page).drawPixmap(cellPixmap, x, y);
+        if (regions != null) regions.get(page).getTexture().draw(cellPixmap, x, y);
+        glyph.page = page;
+        glyph.srcX = x;
+        glyph.srcY = y;
+        if (regions != null) data.setGlyphRegion(glyph, regions.get(page));
+        cellGlyphs[cell] = glyph.id;
+        cells.put(glyph.id, cell);
+        link(cell);
+    }
+
+    private int allocateCell() {
+        if (freeCells.size > 0) return freeCells.pop();
+        if (pages.size - seededPages < maxPages) {
+            addPage();
+            return freeCells.pop();
+        }
+        int cell = head;
+        unlink(cell);
+        int evicted = cellGlyphs[cell];
+        cells.remove(evicted, -1);
+        BitmapFont.Glyph[] glyphPage = data.glyphs[evicted >>> LOG2_PAGE_SIZE];
+        if (glyphPage != null) glyphPage[evicted & ((1 << LOG2_PAGE_SIZE) - 1)] = null;
+        evictions ++;
+        return cell;
+    }
+
+    /** Add an empty dynamic page, with all its cells free. */
+    private void addPage() {
+        int dynamicPages = pages.size - seededPages;
+        Pixmap page = new Pixmap(pageWidth, pageHeight, Pixmap.Format.RGBA8888);
+        page.setBlending(Pixmap.Blending.None);
+        page.setColor(transparentColor);
+        page.fill();
+        pages.add(page);
+        if (regions != null) regions.add(new TextureRegion(newTexture(page)));
+        // Pushed backwards so cells are used in order.
+        for (int i = cellsPerPage - 1; i >= 0; i --) {
+            freeCells.add(dynamicPages * cellsPerPage + i);
+        }
+    }
+
+    /** Append a cell to the tail of the least recently used list. */
+    private void link(int cell) {
+        previous[cell] = tail;
+        next[cell] = -1;
+        if (tail != -1) next[tail] = cell;
+        else head = cell;
+        tail = cell;
+    }
+
+    private void unlink(int cell) {
+        if (previous[cell] != -1) next[previous[cell]] = next[cell];
+        else head = next[cell];
+        if (next[cell] != -1) previous[next[cell]] = previous[cell];
+        else tail = previous[cell];
+    }
+
+    private Texture newTexture(Pixmap page) {
+        Texture texture = new Texture(page);
+        texture.setFilter(config.minFilter, config.magFilter);
+        return texture;
+    }
+
+    /**
+     * Create the textures of the pages on first call, later pages get their texture when allocated and rasterized
+     * glyphs are uploaded right away. Requires a GL context.
+     *
+     * @return the texture regions of the pages
+     */
+    public Array<TextureRegion> getRegions() {
+        if (regions == null) {
+            regions = new Array<>();
+            for (Pixmap page : pages) regions.add(new TextureRegion(newTexture(page)));
+            for (BitmapFont.Glyph[] page : data.glyphs) {
+                if (page == null) continue;
+                for (BitmapFont.Glyph glyph : page) {
+                    if (glyph != null && glyph.page < regions.size) data.setGlyphRegion(glyph, regions.get(glyph.page));
+                }
+            }
+        }
+        return regions;
+    }
+
+    /**
+     * Create a BitmapFont backed by this atlas, the textures are owned by the atlas. Requires a GL context.
+     *
+     * @return the font
+     */
+    public BitmapFont newFont() {
+        BitmapFont font = new BitmapFont(data, getRegions(), false);
+        font.setOwnsTexture(false);
+        return font;
+    }
+
+    /**
+     * @return the font data, glyph look ups go through this atlas
+     */
+    public BitmapFont.BitmapFontData getData() {
+        return data;
+    }
+
+    /**
+     * @return the seeded pages followed by the dynamic pages allocated so far
+     */
+    public Array<Pixmap> getPages() {
+        return pages;
+    }
+
+    /**
+     * @return the amount of seeded pages, the dynamic pages follow them
+     */
+    public int getSeededPageCount() {
+        return seededPages;
+    }
+
+    /**
+     * @return the amount of dynamic glyphs in the atlas
+     */
+    public int getDynamicGlyphCount() {
+        return cells.size;
+    }
+
+    /**
+     * @return the amount of dynamic glyphs the atlas can hold
+     */
+    public int getCapacity() {
+        return cellGlyphs.length;
+    }
+
+    /**
+     * @return the amount of characters covered by the face but rendered as the missing glyph, their glyph is larger than
+     * a cell
+     */
+    public int getOversizedCount() {
+        return oversized.size;
+    }
+
+    /**
+     * @return the amount of look ups of glyphs which were in the atlas
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return the amount of look ups of glyphs which were not in the atlas
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return the amount of dynamic glyphs evicted to make room for others
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Reset the hit, miss and eviction counters.
+     */
+    public void resetCounters() {
+        hits = misses = evictions = 0;
+    }
+
+    private static void error(String message) {
+        BitmapFontPacker.Utils.error(TAG, message);
+    }
+
+    @Override
+    public void dispose() {
+        if (regions != null) {
+            for (TextureRegion region : regions) region.getTexture().dispose();
+            regions = null;
+        }
+        for (Pixmap page : pages) page.dispose();
+        pages.clear();
+        if (cellPixmap != null) {
+            cellPixmap.dispose();
+            cellPixmap = null;
+        }
+    }
+
+    /**
+     * Font data resolving missing glyphs through the atlas.
+     */
+    static class AtlasData extends BitmapFont.BitmapFontData {
+
+        /** Set after loading, so the seed glyphs are parsed without the atlas. */
+        DynamicGlyphAtlas atlas;
+
+        AtlasData() {
+        }
+
+        AtlasData(FileHandle fntFile, boolean flip) {
+            super(fntFile, flip);
+        }
+
+        @Override
+        public BitmapFont.Glyph getGlyph(char ch) {
+            DynamicGlyphAtlas atlas = this.atlas;
+            return atlas == null ? super.getGlyph(ch) : atlas.getGlyph(ch);
+        }
+
+        BitmapFont.Glyph getResidentGlyph(char ch) {
+            return super.getGlyph(ch);
+        }
+
+    }
+
+}
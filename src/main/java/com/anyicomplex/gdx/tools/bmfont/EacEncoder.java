@@ -0,0 +1,156 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+/**
+ * <p>Pure Java encoder of ETC2 EAC R11 (unsigned) blocks.</p>
+ * <p>Each 4x4 block is searched over all 16 modifier tables with a few multiplier and base codeword candidates around
+ * the block's range, which is close to an exhaustive search for the smooth alpha ramps of glyph edges.</p>
+ * @author Yi An
+ *
+ */
+final class EacEncoder {
+
+    private EacEncoder(){}
+
+    /** GL_COMPRESSED_R11_EAC */
+    static final int GL_COMPRESSED_R11_EAC = 0x9270;
+
+    private static final int[][] MODIFIERS = {
+            { -3, -6, -9, -15, 2, 5, 8, 14 },
+            { -3, -7, -10, -13, 2, 6, 9, 12 },
+            { -2, -5, -8, -13, 1, 4, 7, 12 },
+            { -2, -4, -6, -13, 1, 3, 5, 12 },
+            { -3, -6, -8, -12, 2, 5, 7, 11 },
+            { -3, -7, -9, -11, 2, 6, 8, 10 },
+            { -4, -7, -8, -11, 3, 6, 7, 10 },
+            { -3, -5, -8, -11, 2, 4, 7, 10 },
+            { -2, -6, -8, -10, 1, 5, 7, 9 },
+            { -2, -5, -8, -10, 1, 4, 7, 9 },
+            { -2, -4, -8, -10, 1, 3, 7, 9 },
+            { -2, -5, -7, -10, 1, 4, 6, 9 },
+            { -3, -4, -7, -10, 2, 3, 6, 9 },
+            { -1, -2, -3, -10, 0, 1, 2, 9 },
+            { -4, -6, -8, -9, 3, 5, 7, 8 },
+            { -3, -5, -7, -9, 2, 4, 6, 8 }
+    };
+
+    /** Base 0, multiplier 1, every texel on the most negative modifier: decodes to 0 with any table. */
+    private static final long BLOCK_ZERO = (1L << 52) | 0x6DB6DB6DB6DBL;
+    /** Base 255, multiplier 1, every texel on the most positive modifier: decodes to 2047 with any table. */
+    private static final long BLOCK_FULL = (255L << 56) | (1L << 52) | 0xFFFFFFFFFFFFL;
+
+    /**
+     * @param width the image width
+     * @param height the image height
+     * @return the size of the encoded image in bytes
+     */
+    static int encodedSize(int width, int height) {
+        return ((width + 3) / 4) * ((height + 3) / 4) * 8;
+    }
+
+    /**
+     * Encode one channel of an interleaved 8-bit image.
+     *
+     * @param pixels the image
+     * @param width the image width
+     * @param height the image height
+     * @param stride the bytes per pixel
+     * @param channel the channel offset in a pixel
+     * @return the encoded blocks
+     */
+    static byte[] encodeR11(byte[] pixels, int width, int height, int stride, int channel) {
+        byte[] blocks = new byte[encodedSize(width, height)];
+        int[] values = new int[16];
+        int offset = 0;
+        for (int blockY = 0; blockY < height; blockY += 4) {
+            for (int blockX = 0; blockX < width; blockX += 4) {
+                // Texels are in column-major order, edge blocks repeat the last row and column.
+                for (int x = 0; x < 4; x ++) {
+                    int px = Math.min(blockX + x, width - 1);
+                    for (int y = 0; y < 4; y ++) {
+                        int py = Math.min(blockY + y, height - 1);
+                        int value = pixels[(py * width + px) * stride + channel] & 0xFF;
+                        values[x * 4 + y] = (value << 3) | (value >> 5);
+                    }
+                }
+                long block = encodeBlock(values);
+                for (int i = 7; i >= 0; i --) {
+                    blocks[offset ++] = (byte) (block >>> (i * 8));
+                }
+            }
+        }
+        return blocks;
+    }
+
+    private static long encodeBlock(int[] values) {
+        int min = 2047, max = 0;
+        for (int value : values) {
+            if (value < min) min = value;
+            if (value > max) max = value;
+        }
+        if (max == 0) return BLOCK_ZERO;
+        if (min == 2047) return BLOCK_FULL;
+        long bestError = Long.MAX_VALUE;
+        int bestBase = 0, bestMultiplier = 0, bestTable = 0;
+        for (int table = 0; table < MODIFIERS.length && bestError > 0; table ++) {
+            int[] modifiers = MODIFIERS[table];
+            int span = modifiers[7] - modifiers[3];
+            int multiplier = Math.round((max - min) / (span * 8f));
+            for (int m = Math.max(0, multiplier - 1); m <= Math.min(15, multiplier + 1) && bestError > 0; m ++) {
+                int scale = m == 0 ? 1 : m * 8;
+                int base = Math.round(((min + max) / 2f - 4 - (modifiers[3] + modifiers[7]) * scale / 2f) / 8f);
+                for (int b = Math.max(0, base - 1); b <= Math.min(255, base + 1); b ++) {
+                    long error = 0;
+                    for (int value : values) {
+                        error += nearest(value, b, scale, modifiers) >>> 3;
+                        if (error >= bestError) break;
+                    }
+                    if (error < bestError) {
+                        bestError = error;
+                        bestBase = b;
+                        bestMultiplier = m;
+                        bestTable = table;
+                        if (error == 0) break;
+                    }
+                }
+            }
+        }
+        int scale = bestMultiplier == 0 ? 1 : bestMultiplier * 8;
+        long block = ((long) bestBase << 56) | ((long) bestMultiplier << 52) | ((long) bestTable << 48);
+        for (int i = 0; i < 16; i ++) {
+            long index = nearest(values[i], bestBase, scale, MODIFIERS[bestTable]) & 7;
+            block |= index << (45 - i * 3);
+        }
+        return block;
+    }
+
+    /** @return the squared error shifted left by 3, with the modifier index in the low bits */
+    private static long nearest(int value, int base, int scale, int[] modifiers) {
+        long best = Long.MAX_VALUE;
+        int center = base * 8 + 4;
+        for (int i = 0; i < 8; i ++) {
+            int decoded = center + modifiers[i] * scale;
+            decoded = decoded < 0 ? 0 : Math.min(decoded, 2047);
+            long diff = decoded - value;
+            long candidate = ((diff * diff) << 3) | i;
+            if (candidate < best) best = candidate;
+        }
+        return best;
+    }
+
+}
@@ -0,0 +1,362 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.Files.FileType;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.LongArray;
+import com.badlogic.gdx.utils.ObjectMap;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.CRC32;
+
+/**
+ * <p>Single-file bundle of a BitmapFont: a zip archive holding the .fnt file, the pages and the optional page index as
+ * uncompressed (stored) entries, so any zip tool can still list and extract it.</p>
+ * <p>The last entry is a text index with one line per entry:
+ * {@code entry file="name" offset=<data offset in the archive> size=<data size>}, found through the central directory,
+ * so clients can find every file with one open and read it as a slice of the archive without inflating or copying.
+ * Entries are streamed as they are produced, the index comes last as only then all the offsets are known. Entry data is 4-byte aligned, like
+ * Android's zipalign, so KTX pages can be uploaded straight from a mapped archive.</p>
+ * @author Yi An
+ *
+ */
+public final class FontArchive {
+
+    /** The extension of archive files. */
+    public static final String EXTENSION = ".zip";
+    /** The extension of the index entry. */
+    public static final String INDEX_EXTENSION = ".index";
+
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    /** Extra field of zipalign: header id, data size, alignment, then the padding. */
+    private static final int ALIGNMENT_EXTRA = 0xD935;
+    private static final int ALIGNMENT = 4;
+    /** Names are UTF-8. */
+    private static final int FLAGS = 0x0800;
+    /** 1980-01-01 00:00, fixed so the same font always gives the same archive. */
+    private static final int DOS_DATE = (1 << 5) | 1;
+
+    private final FileHandle file;
+    private final ByteBuffer buffer;
+    private final ObjectMap<String, ByteBuffer> entries = new ObjectMap<>();
+    private final Array<String> names = new Array<>(String.class);
+
+    private FontArchive(FileHandle file, ByteBuffer buffer) {
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Open an archive written by the packer. Regular files are memory mapped, classpath and internal files are read
+     * into memory once.
+     *
+     * @param file the archive file
+     * @return the opened archive
+     * @throws IOException if an I/O error occurs or the file is not a font archive
+     */
+    public static FontArchive open(FileHandle file) throws IOException {
+        ByteBuffer buffer;
+        if (file.type() == FileType.Classpath || file.type() == FileType.Internal && !file.file().exists()) {
+            buffer = ByteBuffer.wrap(file.readBytes());
+        }
+        else {
+            try (RandomAccessFile input = new RandomAccessFile(file.file(), "r")) {
+                buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+            }
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        FontArchive archive = new FontArchive(file, buffer);
+        archive.readIndex();
+        return archive;
+    }
+
+    private void readIndex() throws IOException {
+        // The end of central directory record is at the end, before an optional comment of at most 65535 bytes.
+        int end = buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE;
+        while (end >= 0 && end >= buffer.limit() - END_OF_CENTRAL_DIRECTORY_SIZE - 0xFFFF && buffer.getInt(end) != END_OF_CENTRAL_DIRECTORY) end --;
+        if (end < 0 || buffer.getInt(end) != END_OF_CENTRAL_DIRECTORY) throw new IOException("Not a font archive: " + file.path());
+        int count = buffer.getShort(end + 10) & 0xFFFF;
+        long central = buffer.getInt(end + 16) & 0xFFFFFFFFL;
+        // The index is the last entry, written once the offsets of all the other entries are known.
+        long indexHeader = -1, indexSize = 0;
+        String indexName = null;
+        for (int i = 0; i < count; i ++) {
+            if (central + CENTRAL_HEADER_SIZE > end || buffer.getInt((int) central) != CENTRAL_HEADER) throw new IOException("Invalid font archive central directory: " + file.path());
+            int nameLength = buffer.getShort((int) central + 28) & 0xFFFF, extraLength = buffer.getShort((int) central + 30) & 0xFFFF;
+            int commentLength = buffer.getShort((int) central + 32) & 0xFFFF;
+            byte[] name = new byte[nameLength];
+            slice((int) central + CENTRAL_HEADER_SIZE, nameLength).get(name);
+            indexName = new String(name, StandardCharsets.UTF_8);
+            indexSize = buffer.getInt((int) central + 20) & 0xFFFFFFFFL;
+            indexHeader = buffer.getInt((int) central + 42) & 0xFFFFFFFFL;
+            central += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+        }
+        if (indexName == null || !indexName.endsWith(INDEX_EXTENSION)) throw new IOException("Font archive has no index: " + file.path());
+        if (indexHeader + LOCAL_HEADER_SIZE > end || buffer.getInt((int) indexHeader) != LOCAL_HEADER) throw new IOException("Invalid font archive index: " + file.path());
+        long indexOffset = indexHeader + LOCAL_HEADER_SIZE + (buffer.getShort((int) indexHeader + 26) & 0xFFFF) + (buffer.getShort((int) indexHeader + 28) & 0xFFFF);
+        if (indexOffset + indexSize > end) throw new IOException("Invalid font archive index: " + file.path());
+        byte[] index = new byte[(int) indexSize];
+        slice((int) indexOffset, (int) indexSize).get(index);
+        for (String line : new String(index, StandardCharsets.UTF_8).split("\n")) {
+            if (!line.startsWith("entry ")) continue;
+            int nameStart = line.indexOf("file=\"") + 6, nameEnd = line.indexOf('"', nameStart);
+            int offsetStart = line.indexOf(" offset=", nameEnd) + 8, sizeStart = line.indexOf(" size=", offsetStart) + 6;
+            if (nameStart < 6 || nameEnd < 0 || offsetStart < 8 || sizeStart < 6) throw new IOException("Invalid font archive index line: " + line);
+            String entryName = line.substring(nameStart, nameEnd);
+            long entryOffset = Long.parseLong(line.substring(offsetStart, sizeStart - 6));
+            long entrySize = Long.parseLong(line.substring(sizeStart));
+            if (entryOffset < 0 || entrySize < 0 || entryOffset + entrySize > buffer.limit())
+                throw new IOException("Font archive entry out of bounds: " + entryName);
+            names.add(entryName);
+            entries.put(entryName, slice((int) entryOffset, (int) entrySize));
+        }
+    }
+
+    private ByteBuffer slice(int offset, int size) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(offset);
+        duplicate.limit(offset + size);
+        return duplicate.slice();
+    }
+
+    /**
+     * @return the archive file
+     */
+    public FileHandle file() {
+        return file;
+    }
+
+    /**
+     * @return the names of the entries in order, without the index
+     */
+    public String[] getNames() {
+        return names.toArray();
+    }
+
+    /**
+     * @param name the entry name, e.g. the page file name referenced by the .fnt file
+     * @return a read-only slice of the archive holding the entry data, null if not exists
+     */
+    public ByteBuffer get(String name) {
+        ByteBuffer entry = entries.get(name);
+        return entry == null ? null : entry.asReadOnlyBuffer();
+    }
+
+    /**
+     * <p>Streaming writer of an archive. Entries are written one at a time as they are produced, their local headers
+     * are completed once their data is written, then {@link #commit()} appends the index, the central directory and
+     * moves the archive over its destination.</p>
+     * <p>The archive is written next to its destination, so readers never see a partial archive.</p>
+     */
+    static final class Writer implements Closeable {
+
+        private final FileHandle archiveFile;
+        private final File target;
+        private final File temp;
+        private final FileOutputStream stream;
+        private final FileChannel channel;
+        private final OutputStream out;
+        private final Array<byte[]> names = new Array<>(byte[].class);
+        private final LongArray headerOffsets = new LongArray();
+        private final LongArray sizes = new LongArray();
+        private final IntArray crcs = new IntArray();
+        private final StringBuilder index = new StringBuilder();
+        private long offset;
+        private boolean writing;
+        private boolean committed;
+
+        /**
+         * @param archiveFile the archive file
+         * @throws IOException if an I/O error occurs
+         */
+        Writer(FileHandle archiveFile) throws IOException {
+            this.archiveFile = archiveFile;
+            target = archiveFile.file().getAbsoluteFile();
+            temp = File.createTempFile(target.getName(), ".tmp", target.getParentFile());
+            stream = new FileOutputStream(temp);
+            channel = stream.getChannel();
+            out = new BufferedOutputStream(stream, 65536);
+        }
+
+        /**
+         * Start an entry, the previous one must be closed.
+         *
+         * @param name the entry name
+         * @return the output stream of the entry data, closing it completes the entry
+         * @throws IOException if an I/O error occurs
+         */
+        OutputStream entry(String name) throws IOException {
+            if (writing) throw new IOException("Font archive entry not closed before " + name);
+            if (committed) throw new IOException("Font archive already committed: " + archiveFile.path());
+            writing = true;
+            byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+            long headerOffset = offset;
+            long unaligned = headerOffset + LOCAL_HEADER_SIZE + nameBytes.length;
+            int extraLength = unaligned % ALIGNMENT == 0 ? 0 : 6 + (int) ((ALIGNMENT - (unaligned + 6) % ALIGNMENT) % ALIGNMENT);
+            long dataOffset = unaligned + extraLength;
+            // The crc and the sizes are not known yet, they are filled in once the entry is closed.
+            writeInt(out, LOCAL_HEADER);
+            writeShort(out, 10);
+            writeEntryFields(out, 0, 0, nameBytes.length, extraLength);
+            out.write(nameBytes);
+            if (extraLength > 0) {
+                writeShort(out, ALIGNMENT_EXTRA);
+                writeShort(out, extraLength - 4);
+                writeShort(out, ALIGNMENT);
+                for (int j = 6; j < extraLength; j ++) out.write(0);
+            }
+            offset = dataOffset;
+            CRC32 crc = new CRC32();
+            return new OutputStream() {
+                private boolean closed;
+
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    crc.update(b);
+                    offset ++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    crc.update(b, off, len);
+                    offset += len;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    if (closed) return;
+                    closed = true;
+                    long size = offset - dataOffset;
+                    if (offset > 0xFFFFFFFFL) throw new IOException("Font archive too large, zip64 is not supported.");
+                    out.flush();
+                    ByteBuffer fields = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN);
+                    fields.putInt((int) crc.getValue()).putInt((int) size).putInt((int) size).flip();
+                    // Positional writes leave the channel position at the end of the archive.
+                    long position = headerOffset + 14;
+                    while (fields.hasRemaining()) position += channel.write(fields, position);
+                    names.add(nameBytes);
+                    headerOffsets.add(headerOffset);
+                    sizes.add(size);
+                    crcs.add((int) crc.getValue());
+                    index.append("entry file=\"").append(name).append("\" offset=").append(dataOffset)
+                            .append(" size=").append(size).append("\n");
+                    writing = false;
+                }
+            };
+        }
+
+        /**
+         * Write the index as the last entry, then the central directory, and move the archive over its destination.
+         *
+         * @throws IOException if an I/O error occurs
+         */
+        void commit() throws IOException {
+            try (OutputStream entry = entry(archiveFile.nameWithoutExtension() + INDEX_EXTENSION)) {
+                entry.write(index.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            long centralOffset = offset;
+            for (int i = 0; i < names.size; i ++) {
+                writeInt(out, CENTRAL_HEADER);
+                writeShort(out, 20);
+                writeShort(out, 10);
+                writeEntryFields(out, crcs.get(i), (int) sizes.get(i), names.get(i).length, 0);
+                writeShort(out, 0);
+                writeShort(out, 0);
+                writeShort(out, 0);
+                writeInt(out, 0);
+                writeInt(out, (int) headerOffsets.get(i));
+                out.write(names.get(i));
+                offset += CENTRAL_HEADER_SIZE + names.get(i).length;
+            }
+            if (offset > 0xFFFFFFFFL || names.size > 0xFFFF) throw new IOException("Font archive too large, zip64 is not supported.");
+            writeInt(out, END_OF_CENTRAL_DIRECTORY);
+            writeShort(out, 0);
+            writeShort(out, 0);
+            writeShort(out, names.size);
+            writeShort(out, names.size);
+            writeInt(out, (int) (offset - centralOffset));
+            writeInt(out, (int) centralOffset);
+            writeShort(out, 0);
+            out.close();
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            committed = true;
+        }
+
+        /**
+         * Discard the archive if it was not committed.
+         */
+        @Override
+        public void close() throws IOException {
+            stream.close();
+            if (!committed) temp.delete();
+        }
+
+    }
+
+    /** Flags, method, time, date, crc, sizes and name/extra lengths, shared by local and central headers. */
+    private static void writeEntryFields(OutputStream out, int crc, int size, int nameLength, int extraLength) throws IOException {
+        writeShort(out, FLAGS);
+        writeShort(out, 0);
+        writeShort(out, 0);
+        writeShort(out, DOS_DATE);
+        writeInt(out, crc);
+        writeInt(out, size);
+        writeInt(out, size);
+        writeShort(out, nameLength);
+        writeShort(out, extraLength);
+    }
+
+    private static void writeShort(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeType;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.ObjectMap;
+
+import java.io.IOException;
+
+/**
+ * <p>Reference-counted registry of FreeType font faces.</p>
+ * <p>Every font file is opened (memory-mapped by libGDX for local and absolute files) once, shared by all the jobs which
+ * acquire it, and disposed as soon as the last job releases it. Face metadata is read once and cached.</p>
+ * <p><b>NOTE FreeType faces are not thread safe, synchronize on the {@link FontFace} while generating glyphs.</b></p>
+ * @author Yi An
+ *
+ */
+public class FontFaceRegistry implements Disposable {
+
+    private final ObjectMap<String, FontFace> faces = new ObjectMap<>();
+
+    /**
+     * Acquire the first face of the font file, the face should be released after use.
+     *
+     * @see FontFaceRegistry#acquire(FileHandle, int)
+     *
+     * @param fontFile the FreeType supported font file
+     * @return the shared face
+     */
+    public FontFace acquire(FileHandle fontFile) {
+        return acquire(fontFile, 0);
+    }
+
+    /**
+     * Acquire a face of the font file, the face should be released after use.
+     *
+     * @see FontFaceRegistry#release(FontFace)
+     *
+     * @param fontFile the FreeType supported font file
+     * @param faceIndex the face index in the font file
+     * @return the shared face
+     */
+    public synchronized FontFace acquire(FileHandle fontFile, int faceIndex) {
+        String key = key(fontFile, faceIndex);
+        FontFace face = faces.get(key);
+        if (face == null) {
+            face = new FontFace(key, fontFile, faceIndex);
+            faces.put(key, face);
+        }
+        face.references ++;
+        return face;
+    }
+
+    /**
+     * Release a face acquired from this registry, the face is disposed when it's no longer referenced.
+     *
+     * @param face the face to release
+     */
+    public synchronized void release(FontFace face) {
+        if (face == null || face.references == 0 || faces.get(face.key) != face) return;
+        face.references --;
+        if (face.references == 0) {
+            faces.remove(face.key);
+            face.dispose();
+        }
+    }
+
+    /**
+     * @return the amount of faces currently alive
+     */
+    public synchronized int size() {
+        return faces.size;
+    }
+
+    /**
+     * Dispose all the faces whether they are referenced or not.
+     */
+    @Override
+    public synchronized void dispose() {
+        for (FontFace face : faces.values()) {
+            face.references = 0;
+            face.dispose();
+        }
+        faces.clear();
+    }
+
+    private static String key(FileHandle fontFile, int faceIndex) {
+        String path;
+        switch (fontFile.type()) {
+            case Absolute:
+            case External:
+            case Local:
+                try {
+                    path = fontFile.file().getCanonicalPath();
+                } catch (IOException e) {
+                    path = fontFile.file().getAbsolutePath();
+                }
+                break;
+            default:
+                path = fontFile.type() + ":" + fontFile.path();
+                break;
+        }
+        return path + "#" + faceIndex;
+    }
+
+    /**
+     * A shared face with its cached metadata.
+     */
+    public static class FontFace implements Disposable {
+
+        final String key;
+        int references;
+
+        private final FileHandle fontFile;
+        private final int faceIndex;
+        private final CompositingFontGenerator generator;
+        private final FreeType.Face face;
+        private final int styleFlags;
+        private final int glyphCount;
+        private final IntIntMap charIndices = new IntIntMap();
+
+        FontFace(String key, FileHandle fontFile, int faceIndex) {
+            this.key = key;
+            this.fontFile = fontFile;
+            this.faceIndex = faceIndex;
+            generator = new CompositingFontGenerator(fontFile, faceIndex);
+            face = generator.getFace();
+            styleFlags = face == null ? 0 : face.getStyleFlags();
+            glyphCount = face == null ? -1 : face.getNumGlyphs();
+        }
+
+        /**
+         * @return the font file
+         */
+        public FileHandle getFontFile() {
+            return fontFile;
+        }
+
+        /**
+         * @return the face index in the font file
+         */
+        public int getFaceIndex() {
+            return faceIndex;
+        }
+
+        /**
+         * @return the generator of this face
+         */
+        public FreeTypeFontGenerator getGenerator() {
+            return generator;
+        }
+
+        /**
+         * @return the generator of this face, also rendering the codepoints beyond the generator's char based API
+         */
+        CompositingFontGenerator getCompositingGenerator() {
+            return generator;
+        }
+
+        /**
+         * @return the FreeType style flags
+         */
+        public int getStyleFlags() {
+            return styleFlags;
+        }
+
+        /**
+         * @return whether the face is bold
+         */
+        public boolean isBold() {
+            return (styleFlags & FreeType.FT_STYLE_FLAG_BOLD) == FreeType.FT_STYLE_FLAG_BOLD;
+        }
+
+        /**
+         * @return whether the face is italic
+         */
+        public boolean isItalic() {
+            return (styleFlags & FreeType.FT_STYLE_FLAG_ITALIC) == FreeType.FT_STYLE_FLAG_ITALIC;
+        }
+
+        /**
+         * @return the amount of glyphs in the face, -1 if unknown
+         */
+        public int getGlyphCount() {
+            return glyphCount;
+        }
+
+        /**
+         * Look up the cmap of the face, results are cached.
+         *
+         * @param codepoint the unicode codepoint
+         * @return the glyph index, 0 if the face doesn't cover the codepoint, -1 if unknown
+         */
+        public synchronized int getCharIndex(int codepoint) {
+            if (face == null) return -1;
+            int index = charIndices.get(codepoint, -1);
+            if (index == -1) {
+                index = face.getCharIndex(codepoint);
+                charIndices.put(codepoint, index);
+            }
+            return index;
+        }
+
+        /**
+         * @param codepoint the unicode codepoint
+         * @return whether the face covers the codepoint, true if unknown
+         */
+        public boolean covers(int codepoint) {
+            return getCharIndex(codepoint) != 0;
+        }
+
+        /**
+         * @return whether the face has kerning information
+         */
+        public boolean hasKerning() {
+            return face != null && face.hasKerning();
+        }
+
+        /**
+         * Look up the kerning at the size last set on the face by its generator, so it should be called while holding the
+         * lock of this face, right after generating.
+         *
+         * @param leftIndex the glyph index of the left glyph
+         * @param rightIndex the glyph index of the right glyph
+         * @return the kerning in pixels
+         */
+        public synchronized int getKerning(int leftIndex, int rightIndex) {
+            if (face == null) return 0;
+            return FreeType.toInt(face.getKerning(leftIndex, rightIndex, 0));
+        }
+
+        @Override
+        public void dispose() {
+            generator.dispose();
+        }
+
+    }
+
+}
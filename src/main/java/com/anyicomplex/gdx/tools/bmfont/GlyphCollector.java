@@ -0,0 +1,97 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * <p>A {@link PixmapPacker} which doesn't pack, but keeps a copy of every glyph bitmap rendered by
+ * {@link com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator}, so the glyphs can be placed on pages later in
+ * any order.</p>
+ * <p>No page is ever created, so the generator assigns page -1 to every collected glyph, and the rectangles handed out
+ * carry the collection index in x, which the generator stores in {@link BitmapFont.Glyph#srcX}.</p>
+ * @author Yi An
+ *
+ */
+class GlyphCollector extends PixmapPacker {
+
+    private final Array<Pixmap> images = new Array<>();
+
+    GlyphCollector() {
+        super(1, 1, Pixmap.Format.RGBA8888, 0, false);
+    }
+
+    @Override
+    public synchronized Rectangle pack(String name, Pixmap image) {
+        Pixmap copy = null;
+        if (image.getWidth() > 0 && image.getHeight() > 0) {
+            copy = new Pixmap(image.getWidth(), image.getHeight(), image.getFormat());
+            copy.setBlending(Pixmap.Blending.None);
+            copy.drawPixmap(image, 0, 0);
+        }
+        return new Rectangle(add(copy), 0, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Collect a glyph bitmap without copying it, the bitmap is disposed with this collector.
+     *
+     * @param image the glyph bitmap, null if empty
+     * @return the collection index
+     */
+    synchronized int add(Pixmap image) {
+        images.add(image);
+        return images.size - 1;
+    }
+
+    /**
+     * @param glyph the glyph
+     * @return whether the glyph bitmap was collected
+     */
+    boolean collected(BitmapFont.Glyph glyph) {
+        return glyph.page == -1 && glyph.srcX >= 0 && glyph.srcX < images.size;
+    }
+
+    /**
+     * @param glyph a collected glyph
+     * @return the collection index of the glyph
+     */
+    int indexOf(BitmapFont.Glyph glyph) {
+        return glyph.srcX;
+    }
+
+    /**
+     * @param glyph a collected glyph
+     * @return the glyph bitmap, null if empty
+     */
+    Pixmap getImage(BitmapFont.Glyph glyph) {
+        return images.get(glyph.srcX);
+    }
+
+    @Override
+    public synchronized void dispose() {
+        for (Pixmap image : images) {
+            if (image != null) image.dispose();
+        }
+        images.clear();
+        super.dispose();
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.IntMap;
+
+/**
+ * <p>Sparse index of the glyphs of a font by codepoint, from U+0000 to U+10FFFF.</p>
+ * <p>{@link BitmapFont.BitmapFontData} pages its glyphs by char, so it can't hold supplementary codepoints (emoji, CJK
+ * Extension B...) and listing its glyphs means scanning 128 pages of 512 slots. The index keys the glyphs by codepoint in
+ * an open addressing map of primitive keys instead, and only holds the glyphs of the font.</p>
+ * <p>{@link BitmapFont.Glyph#kerning} is paged by char as well, it keeps the pairs of two BMP codepoints and the index
+ * keeps the pairs with a supplementary codepoint.</p>
+ * @author Yi An
+ *
+ */
+final class GlyphIndex {
+
+    private final IntMap<BitmapFont.Glyph> glyphs;
+    /** Kerning of the pairs with a supplementary codepoint, by first then second codepoint. */
+    private final IntMap<IntIntMap> kernings = new IntMap<>();
+
+    GlyphIndex() {
+        this(51);
+    }
+
+    /**
+     * @param capacity the expected amount of glyphs
+     */
+    GlyphIndex(int capacity) {
+        glyphs = new IntMap<>(capacity);
+    }
+
+    /**
+     * Add a glyph by its id, replacing the glyph of the same codepoint.
+     *
+     * @param glyph the glyph
+     */
+    void put(BitmapFont.Glyph glyph) {
+        glyphs.put(glyph.id, glyph);
+    }
+
+    /**
+     * @param codepoint the codepoint
+     * @return the glyph of the codepoint, null if none
+     */
+    BitmapFont.Glyph get(int codepoint) {
+        return glyphs.get(codepoint);
+    }
+
+    /**
+     * @return the amount of glyphs
+     */
+    int size() {
+        return glyphs.size;
+    }
+
+    /**
+     * @return the glyphs in codepoint order
+     */
+    Array<BitmapFont.Glyph> sorted() {
+        Array<BitmapFont.Glyph> sorted = new Array<>(glyphs.size);
+        for (BitmapFont.Glyph glyph : glyphs.values()) sorted.add(glyph);
+        sorted.sort((a, b) -> Integer.compare(a.id, b.id));
+        return sorted;
+    }
+
+    /**
+     * @param first the first glyph
+     * @param second the second codepoint
+     * @return the kerning of the pair
+     */
+    int getKerning(BitmapFont.Glyph first, int second) {
+        if (first.id <= Character.MAX_VALUE && second <= Character.MAX_VALUE) return first.getKerning((char) second);
+        IntIntMap pairs = kernings.get(first.id);
+        return pairs == null ? 0 : pairs.get(second, 0);
+    }
+
+    /**
+     * @param first the first glyph
+     * @param second the second codepoint
+     * @param amount the kerning of the pair, 0 to remove it
+     */
+    void setKerning(BitmapFont.Glyph first, int second, int amount) {
+        if (first.id <= Character.MAX_VALUE && second <= Character.MAX_VALUE) {
+            if (amount != 0 || first.kerning != null) first.setKerning(second, amount);
+            return;
+        }
+        IntIntMap pairs = kernings.get(first.id);
+        if (amount == 0) {
+            if (pairs == null) return;
+            pairs.remove(second, 0);
+            if (pairs.size == 0) kernings.remove(first.id);
+            return;
+        }
+        if (pairs == null) kernings.put(first.id, pairs = new IntIntMap());
+        pairs.put(second, amount);
+    }
+
+    /**
+     * Collect the kerning pairs of the glyph, only the pages of {@link BitmapFont.Glyph#kerning} in use are scanned.
+     *
+     * @param first the first glyph
+     * @param pairs cleared, then receives the kerning by second codepoint
+     * @return the amount of pairs
+     */
+    int getKernings(BitmapFont.Glyph first, IntIntMap pairs) {
+        pairs.clear();
+        if (first.kerning != null) {
+            for (int i = 0; i < first.kerning.length; i ++) {
+                byte[] page = first.kerning[i];
+                if (page == null) continue;
+                for (int j = 0; j < page.length; j ++) {
+                    if (page[j] != 0) pairs.put(i * page.length + j, page[j]);
+                }
+            }
+        }
+        IntIntMap supplementary = kernings.get(first.id);
+        if (supplementary != null) pairs.putAll(supplementary);
+        return pairs.size;
+    }
+
+    /**
+     * Remove all the kerning pairs of the glyph.
+     *
+     * @param first the first glyph
+     */
+    void clearKernings(BitmapFont.Glyph first) {
+        first.kerning = null;
+        kernings.remove(first.id);
+    }
+
+}
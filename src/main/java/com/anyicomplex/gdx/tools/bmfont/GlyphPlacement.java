@@ -0,0 +1,120 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntIntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+
+/**
+ * <p>Glyph placement policies, deciding the order glyphs are packed in and therefore which page each glyph lands on.</p>
+ * <ul>
+ *     <li><b>none</b> the generator's order, tallest glyphs first, filling gaps in earlier pages.</li>
+ *     <li><b>block</b> glyphs grouped by Unicode block.</li>
+ *     <li><b>script</b> glyphs grouped by Unicode script.</li>
+ *     <li><b>priority</b> glyphs of the priority characters first in the given order, then the others grouped by Unicode
+ *     block.</li>
+ * </ul>
+ * <p>Except for none, pages are filled one after another, so a group spans as few pages as possible.</p>
+ * @author Yi An
+ *
+ */
+final class GlyphPlacement {
+
+    private GlyphPlacement(){}
+
+    /**
+     * @param placement the placement policy
+     * @return whether the placement policy is supported
+     */
+    static boolean supports(String placement) {
+        if (placement == null) return false;
+        for (String supported : new String[] {"none", "block", "script", "priority"}) {
+            if (supported.equalsIgnoreCase(placement)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @param placement the placement policy
+     * @return whether glyphs may be packed into earlier pages
+     */
+    static boolean backfill(String placement) {
+        return placement.equalsIgnoreCase("none");
+    }
+
+    /**
+     * Sort the glyphs into packing order.
+     *
+     * @param glyphs the glyphs in the generator's order
+     * @param placement the placement policy
+     * @param priority the priority characters, only used by the priority policy
+     */
+    static void sort(Array<BitmapFont.Glyph> glyphs, String placement, String priority) {
+        if (placement.equalsIgnoreCase("none")) return;
+        boolean script = placement.equalsIgnoreCase("script");
+        IntIntMap ranks = new IntIntMap();
+        if (placement.equalsIgnoreCase("priority") && priority != null) {
+            priority.codePoints().forEach(codepoint -> {
+                if (!ranks.containsKey(codepoint)) ranks.put(codepoint, ranks.size);
+            });
+        }
+        // Groups are ordered by their lowest requested codepoint.
+        ObjectIntMap<Object> groupStarts = new ObjectIntMap<>();
+        for (BitmapFont.Glyph glyph : glyphs) {
+            Object group = group(glyph.id, script);
+            groupStarts.put(group, Math.min(groupStarts.get(group, Integer.MAX_VALUE), glyph.id));
+        }
+        glyphs.sort((a, b) -> {
+            // The missing glyph stays first like the generator does.
+            if (a.id == 0 || b.id == 0) return (a.id == 0 ? 0 : 1) - (b.id == 0 ? 0 : 1);
+            int rankA = ranks.get(a.id, Integer.MAX_VALUE), rankB = ranks.get(b.id, Integer.MAX_VALUE);
+            if (rankA != rankB) return Integer.compare(rankA, rankB);
+            int groupA = groupStarts.get(group(a.id, script), 0), groupB = groupStarts.get(group(b.id, script), 0);
+            if (groupA != groupB) return Integer.compare(groupA, groupB);
+            if (a.height != b.height) return b.height - a.height;
+            return a.id - b.id;
+        });
+    }
+
+    private static Object group(int codepoint, boolean script) {
+        Object group = script ? Character.UnicodeScript.of(codepoint) : Character.UnicodeBlock.of(codepoint);
+        return group == null ? "UNASSIGNED" : group;
+    }
+
+    /**
+     * Format codepoints as ranges, eg. {@code 20-7E,A0-FF,3000}.
+     *
+     * @param codepoints the codepoints, sorted in place
+     * @return the ranges in hex
+     */
+    static String ranges(IntArray codepoints) {
+        codepoints.sort();
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < codepoints.size; i ++) {
+            int start = codepoints.get(i), end = start;
+            while (i + 1 < codepoints.size && codepoints.get(i + 1) <= end + 1) end = codepoints.get(++ i);
+            if (builder.length() > 0) builder.append(',');
+            builder.append(Integer.toHexString(start).toUpperCase());
+            if (end != start) builder.append('-').append(Integer.toHexString(end).toUpperCase());
+        }
+        return builder.toString();
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntIntMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import static com.anyicomplex.gdx.tools.bmfont.BitmapFontPacker.Utils.rgba8888;
+
+/**
+ * <p>Intermediate glyph-bitmap file of one shard of a font: the font metrics, then the metrics, kerning and RGBA8888
+ * bitmap of every glyph rendered by the shard, deflated.</p>
+ * @author Yi An
+ *
+ */
+final class GlyphShard {
+
+    /** "GBMS" */
+    static final int MAGIC = 0x47424D53;
+    /** 2: kerning as int, supplementary pairs are not limited to a byte. */
+    static final int VERSION = 2;
+
+    /** The BitmapFont file name */
+    String name;
+    boolean bold, italic;
+    /** The index of the shard, from 0 to count - 1 */
+    int index;
+    /** The amount of shards of the font */
+    int count;
+
+    /**
+     * Write a shard file.
+     *
+     * @param output the output stream, not closed
+     * @param shard the shard header
+     * @param data the font data
+     * @param glyphs the glyphs of the shard
+     * @param index the index holding the kerning of the glyphs
+     * @param collector the collector holding the glyph bitmaps
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(OutputStream output, GlyphShard shard, BitmapFont.BitmapFontData data, Array<BitmapFont.Glyph> glyphs,
+                      GlyphIndex index, GlyphCollector collector) throws IOException {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            DeflaterOutputStream deflated = new DeflaterOutputStream(output, deflater);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(deflated, 65536));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(shard.name);
+            out.writeBoolean(shard.bold);
+            out.writeBoolean(shard.italic);
+            out.writeInt(shard.index);
+            out.writeInt(shard.count);
+            out.writeBoolean(data.flipped);
+            out.writeFloat(data.lineHeight);
+            out.writeFloat(data.ascent);
+            out.writeFloat(data.descent);
+            out.writeFloat(data.down);
+            out.writeFloat(data.capHeight);
+            out.writeFloat(data.spaceXadvance);
+            out.writeFloat(data.xHeight);
+            out.writeInt(glyphs.size);
+            IntIntMap pairs = new IntIntMap();
+            for (BitmapFont.Glyph glyph : glyphs) {
+                out.writeInt(glyph.id);
+                out.writeInt(glyph.width);
+                out.writeInt(glyph.height);
+                out.writeInt(glyph.xoffset);
+                out.writeInt(glyph.yoffset);
+                out.writeInt(glyph.xadvance);
+                out.writeInt(index.getKernings(glyph, pairs));
+                for (IntIntMap.Entry pair : pairs) {
+                    out.writeInt(pair.key);
+                    out.writeInt(pair.value);
+                }
+                boolean collected = collector.collected(glyph);
+                Pixmap image = collected ? collector.getImage(glyph) : null;
+                out.writeBoolean(collected);
+                if (!collected) continue;
+                out.writeInt(image == null ? 0 : image.getWidth());
+                out.writeInt(image == null ? 0 : image.getHeight());
+                if (image != null) out.write(rgba8888(image));
+            }
+            out.flush();
+            deflated.finish();
+        }
+        finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Read a shard file, the font metrics are set on the data and the glyphs are added to the index and the collector.
+     *
+     * @param input the input stream, not closed
+     * @param data receives the font metrics
+     * @param index receives the glyphs
+     * @param collector receives the glyph bitmaps
+     * @return the shard header
+     * @throws IOException if an I/O error occurs or the file is not a shard file
+     */
+    static GlyphShard read(InputStream input, BitmapFont.BitmapFontData data, GlyphIndex index, GlyphCollector collector) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(input), 65536));
+        if (in.readInt() != MAGIC) throw new IOException("Not a shard file.");
+        int version = in.readInt();
+        if (version != VERSION) throw new IOException("Unsupported shard file version: " + version);
+        GlyphShard shard = new GlyphShard();
+        shard.name = in.readUTF();
+        shard.bold = in.readBoolean();
+        shard.italic = in.readBoolean();
+        shard.index = in.readInt();
+        shard.count = in.readInt();
+        if (shard.count < 1 || shard.index < 0 || shard.index >= shard.count) throw new IOException("Invalid shard index.");
+        data.flipped = in.readBoolean();
+        data.lineHeight = in.readFloat();
+        data.ascent = in.readFloat();
+        data.descent = in.readFloat();
+        data.down = in.readFloat();
+        data.capHeight = in.readFloat();
+        data.spaceXadvance = in.readFloat();
+        data.xHeight = in.readFloat();
+        for (int i = 0, n = in.readInt(); i < n; i ++) {
+            BitmapFont.Glyph glyph = new BitmapFont.Glyph();
+            glyph.id = in.readInt();
+            glyph.width = in.readInt();
+            glyph.height = in.readInt();
+            glyph.xoffset = in.readInt();
+            glyph.yoffset = in.readInt();
+            glyph.xadvance = in.readInt();
+            for (int j = 0, nn = in.readInt(); j < nn; j ++) {
+                int second = in.readInt();
+                index.setKerning(glyph, second, in.readInt());
+            }
+            if (in.readBoolean()) {
+                int width = in.readInt(), height = in.readInt();
+                Pixmap image = null;
+                if (width > 0 && height > 0) {
+                    byte[] pixels = new byte[width * height * 4];
+                    in.readFully(pixels);
+                    image = new Pixmap(width, height, Pixmap.Format.RGBA8888);
+                    ByteBuffer buffer = image.getPixels();
+                    buffer.position(0);
+                    buffer.put(pixels);
+                    buffer.position(0);
+                }
+                glyph.page = -1;
+                glyph.srcX = collector.add(image);
+            }
+            index.put(glyph);
+        }
+        return shard;
+    }
+
+}
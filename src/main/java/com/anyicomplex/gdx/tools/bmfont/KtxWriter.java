@@ -0,0 +1,126 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.graphics.GL20;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * <p>Writer of KTX 1.1 texture containers, readable by libGDX's {@link com.badlogic.gdx.graphics.glutils.KTXTextureData}.</p>
+ * <p>Images are laid out as {@code levels[mipLevel][arrayElement]}; every level must already be encoded in the format's
+ * byte layout.</p>
+ * @author Yi An
+ *
+ */
+final class KtxWriter {
+
+    private KtxWriter(){}
+
+    private static final byte[] IDENTIFIER = {
+            (byte) 0xAB, 0x4B, 0x54, 0x58, 0x20, 0x31, 0x31, (byte) 0xBB, 0x0D, 0x0A, 0x1A, 0x0A
+    };
+    private static final int ENDIANNESS = 0x04030201;
+
+    /**
+     * The GL format fields of a KTX file.
+     */
+    static class Format {
+        /** Uncompressed 8-bit RGBA, unsized internal format for GLES2 compatibility. */
+        static final Format RGBA8888 = new Format(GL20.GL_UNSIGNED_BYTE, 1, GL20.GL_RGBA, GL20.GL_RGBA, GL20.GL_RGBA);
+
+        final int glType;
+        final int glTypeSize;
+        final int glFormat;
+        final int glInternalFormat;
+        final int glBaseInternalFormat;
+
+        Format(int glType, int glTypeSize, int glFormat, int glInternalFormat, int glBaseInternalFormat) {
+            this.glType = glType;
+            this.glTypeSize = glTypeSize;
+            this.glFormat = glFormat;
+            this.glInternalFormat = glInternalFormat;
+            this.glBaseInternalFormat = glBaseInternalFormat;
+        }
+    }
+
+    /**
+     * Write a 2D texture, optionally with mip maps.
+     *
+     * @param output the output stream, not closed
+     * @param format the format of the levels
+     * @param width the base level width
+     * @param height the base level height
+     * @param levels the encoded levels from the base level, one image per level
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(OutputStream output, Format format, int width, int height, byte[]... levels) throws IOException {
+        byte[][][] images = new byte[levels.length][][];
+        for (int i = 0; i < levels.length; i ++) {
+            images[i] = new byte[][] { levels[i] };
+        }
+        write(output, format, width, height, 0, images);
+    }
+
+    /**
+     * Write a 2D texture or 2D texture array, optionally with mip maps.
+     *
+     * @param output the output stream, not closed
+     * @param format the format of the images
+     * @param width the base level width
+     * @param height the base level height
+     * @param arrayElements the amount of array elements, 0 for a non-array texture
+     * @param images the encoded images, indexed by mip level then array element
+     * @throws IOException if an I/O error occurs
+     */
+    static void write(OutputStream output, Format format, int width, int height, int arrayElements, byte[][][] images) throws IOException {
+        OutputStream out = new BufferedOutputStream(output);
+        out.write(IDENTIFIER);
+        // Little endian like the GPUs, so multi-byte texels never need to be swapped at load time.
+        writeInt(out, ENDIANNESS);
+        writeInt(out, format.glType);
+        writeInt(out, format.glTypeSize);
+        writeInt(out, format.glFormat);
+        writeInt(out, format.glInternalFormat);
+        writeInt(out, format.glBaseInternalFormat);
+        writeInt(out, width);
+        writeInt(out, height);
+        writeInt(out, 0);
+        writeInt(out, arrayElements);
+        writeInt(out, 1);
+        writeInt(out, images.length);
+        writeInt(out, 0);
+        for (byte[][] level : images) {
+            int imageSize = 0;
+            for (byte[] image : level) imageSize += image.length;
+            writeInt(out, imageSize);
+            for (byte[] image : level) out.write(image);
+            for (int i = imageSize; (i & 3) != 0; i ++) out.write(0);
+        }
+        out.flush();
+    }
+
+    private static void writeInt(OutputStream out, int value) throws IOException {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
+    }
+
+}
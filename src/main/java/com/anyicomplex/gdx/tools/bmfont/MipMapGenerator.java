@@ -0,0 +1,121 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+/**
+ * <p>CPU mip map chain generator for RGBA8888 glyph pages.</p>
+ * <p>Each level is a 2x2 box filter of the previous one. Colors are averaged in linear space weighted by alpha, so
+ * antialiased glyph edges neither darken nor pick up the color of fully transparent texels.</p>
+ * @author Yi An
+ *
+ */
+final class MipMapGenerator {
+
+    private MipMapGenerator(){}
+
+    private static final float[] TO_LINEAR = new float[256];
+    private static final int SRGB_TABLE_SIZE = 4096;
+    private static final byte[] TO_SRGB = new byte[SRGB_TABLE_SIZE + 1];
+
+    static {
+        for (int i = 0; i < TO_LINEAR.length; i ++) {
+            float c = i / 255f;
+            TO_LINEAR[i] = c <= 0.04045f ? c / 12.92f : (float) Math.pow((c + 0.055f) / 1.055f, 2.4f);
+        }
+        for (int i = 0; i < TO_SRGB.length; i ++) {
+            float l = i / (float) SRGB_TABLE_SIZE;
+            float c = l <= 0.0031308f ? l * 12.92f : 1.055f * (float) Math.pow(l, 1 / 2.4f) - 0.055f;
+            TO_SRGB[i] = (byte) Math.round(c * 255);
+        }
+    }
+
+    /**
+     * @param width the base level width
+     * @param height the base level height
+     * @return the amount of levels down to 1x1, including the base level
+     */
+    static int levelCount(int width, int height) {
+        return 32 - Integer.numberOfLeadingZeros(Math.max(width, height));
+    }
+
+    /**
+     * Generate the full mip map chain.
+     *
+     * @param rgba the base level in RGBA8888, returned as the first level
+     * @param width the base level width
+     * @param height the base level height
+     * @return all the levels from the base level down to 1x1
+     */
+    static byte[][] generate(byte[] rgba, int width, int height) {
+        byte[][] levels = new byte[levelCount(width, height)][];
+        levels[0] = rgba;
+        for (int i = 1; i < levels.length; i ++) {
+            levels[i] = downsample(levels[i - 1], width, height);
+            width = Math.max(1, width >> 1);
+            height = Math.max(1, height >> 1);
+        }
+        return levels;
+    }
+
+    /**
+     * Halve an RGBA8888 image, odd edges are clamped.
+     *
+     * @param src the source image
+     * @param width the source width
+     * @param height the source height
+     * @return the downsampled image
+     */
+    static byte[] downsample(byte[] src, int width, int height) {
+        int dstWidth = Math.max(1, width >> 1), dstHeight = Math.max(1, height >> 1);
+        byte[] dst = new byte[dstWidth * dstHeight * 4];
+        int[] offsets = new int[4];
+        for (int y = 0; y < dstHeight; y ++) {
+            int y0 = Math.min(y * 2, height - 1), y1 = Math.min(y * 2 + 1, height - 1);
+            for (int x = 0; x < dstWidth; x ++) {
+                int x0 = Math.min(x * 2, width - 1), x1 = Math.min(x * 2 + 1, width - 1);
+                offsets[0] = (y0 * width + x0) * 4;
+                offsets[1] = (y0 * width + x1) * 4;
+                offsets[2] = (y1 * width + x0) * 4;
+                offsets[3] = (y1 * width + x1) * 4;
+                int alphaSum = 0;
+                float r = 0, g = 0, b = 0, weights = 0;
+                for (int offset : offsets) {
+                    int a = src[offset + 3] & 0xFF;
+                    // Fully transparent texels still contribute when the whole block is transparent, keeping their color.
+                    float weight = a == 0 ? 1e-6f : a;
+                    r += TO_LINEAR[src[offset] & 0xFF] * weight;
+                    g += TO_LINEAR[src[offset + 1] & 0xFF] * weight;
+                    b += TO_LINEAR[src[offset + 2] & 0xFF] * weight;
+                    weights += weight;
+                    alphaSum += a;
+                }
+                int dstOffset = (y * dstWidth + x) * 4;
+                dst[dstOffset] = toSRGB(r / weights);
+                dst[dstOffset + 1] = toSRGB(g / weights);
+                dst[dstOffset + 2] = toSRGB(b / weights);
+                dst[dstOffset + 3] = (byte) ((alphaSum + 2) >> 2);
+            }
+        }
+        return dst;
+    }
+
+    private static byte toSRGB(float linear) {
+        int index = (int) (linear * SRGB_TABLE_SIZE + 0.5f);
+        return TO_SRGB[index < 0 ? 0 : Math.min(index, SRGB_TABLE_SIZE)];
+    }
+
+}
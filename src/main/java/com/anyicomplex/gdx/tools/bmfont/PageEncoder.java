@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.glutils.ETC1;
+
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Encoder of glyph page levels into the KTX based page formats.</p>
+ * <ul>
+ *     <li><b>ktx</b> uncompressed RGBA8888, or RGBA4444 (GL_UNSIGNED_SHORT_4_4_4_4) with the rgba4444
+ *     {@link PageQuantizer quantization}.</li>
+ *     <li><b>etc1</b> ETC1 through libGDX's native encoder. ETC1 has no alpha channel, so the glyph coverage (alpha) is
+ *     encoded as luminance and the runtime should sample a color channel as alpha.</li>
+ *     <li><b>eacR11</b> ETC2 EAC R11, single channel glyph coverage (alpha) in the red channel.</li>
+ * </ul>
+ * @author Yi An
+ *
+ */
+final class PageEncoder {
+
+    private PageEncoder(){}
+
+    private static final KtxWriter.Format ETC1_RGB8 = new KtxWriter.Format(0, 1, 0, ETC1.ETC1_RGB8_OES, GL20.GL_RGB);
+    private static final KtxWriter.Format RGBA4444 = new KtxWriter.Format(GL20.GL_UNSIGNED_SHORT_4_4_4_4, 2, GL20.GL_RGBA, GL20.GL_RGBA, GL20.GL_RGBA);
+    private static final KtxWriter.Format EAC_R11 = new KtxWriter.Format(0, 1, 0, EacEncoder.GL_COMPRESSED_R11_EAC, 0x1903);
+
+    /**
+     * @param pageFormat the page format
+     * @return whether the page format is supported
+     */
+    static boolean supports(String pageFormat) {
+        return pageFormat != null && (pageFormat.equalsIgnoreCase("png") || ktxFormat(pageFormat) != null);
+    }
+
+    /**
+     * @param pageFormat the page format
+     * @return whether the page format keeps only the alpha channel of the pages
+     */
+    static boolean alphaOnly(String pageFormat) {
+        return pageFormat.equalsIgnoreCase("etc1") || pageFormat.equalsIgnoreCase("eacR11");
+    }
+
+    /**
+     * @param pageFormat the page format
+     * @param quantization the page quantization
+     * @return whether the page format can be quantized, only the uncompressed formats can
+     */
+    static boolean supports(String pageFormat, String quantization) {
+        return !PageQuantizer.quantizes(quantization) || pageFormat.equalsIgnoreCase("png") || pageFormat.equalsIgnoreCase("ktx");
+    }
+
+    /**
+     * @param pageFormat the page format
+     * @return the KTX format fields, null if the page format is not written into KTX
+     */
+    static KtxWriter.Format ktxFormat(String pageFormat) {
+        return ktxFormat(pageFormat, "none");
+    }
+
+    /**
+     * @param pageFormat the page format
+     * @param quantization the page quantization
+     * @return the KTX format fields, null if the page format is not written into KTX
+     */
+    static KtxWriter.Format ktxFormat(String pageFormat, String quantization) {
+        if (pageFormat.equalsIgnoreCase("ktx")) return quantization.equalsIgnoreCase("rgba4444") ? RGBA4444 : KtxWriter.Format.RGBA8888;
+        if (pageFormat.equalsIgnoreCase("etc1")) return ETC1_RGB8;
+        if (pageFormat.equalsIgnoreCase("eacR11")) return EAC_R11;
+        return null;
+    }
+
+    /**
+     * @param pageFormat the page format
+     * @param quantization the page quantization
+     * @param width the level width
+     * @param height the level height
+     * @return the texture memory of a page level once loaded, png pages are loaded as RGBA8888
+     */
+    static long levelBytes(String pageFormat, String quantization, int width, int height) {
+        // ETC1 and EAC R11 blocks are 8 bytes for 4x4 texels.
+        if (alphaOnly(pageFormat)) return (long) ((width + 3) / 4) * ((height + 3) / 4) * 8;
+        if (pageFormat.equalsIgnoreCase("ktx") && quantization.equalsIgnoreCase("rgba4444")) return (long) ((width * 2 + 3) & ~3) * height;
+        return (long) width * height * 4;
+    }
+
+    /**
+     * Encode a page level.
+     *
+     * @param pageFormat a KTX based page format
+     * @param quantization the page quantization
+     * @param rgba the level in RGBA8888, may be quantized in place
+     * @param width the level width
+     * @param height the level height
+     * @return the encoded level
+     */
+    static byte[] encode(String pageFormat, String quantization, byte[] rgba, int width, int height) {
+        if (pageFormat.equalsIgnoreCase("etc1")) return encodeETC1(rgba, width, height);
+        if (pageFormat.equalsIgnoreCase("eacR11")) return EacEncoder.encodeR11(rgba, width, height, 4, 3);
+        PageQuantizer.quantize(quantization, rgba, width, height);
+        if (quantization.equalsIgnoreCase("rgba4444")) return PageQuantizer.packRGBA4444(rgba, width, height);
+        return rgba;
+    }
+
+    private static byte[] encodeETC1(byte[] rgba, int width, int height) {
+        Pixmap pixmap = new Pixmap(width, height, Pixmap.Format.RGB888);
+        ByteBuffer pixels = pixmap.getPixels();
+        for (int i = 0, n = width * height; i < n; i ++) {
+            byte alpha = rgba[i * 4 + 3];
+            pixels.put(i * 3, alpha);
+            pixels.put(i * 3 + 1, alpha);
+            pixels.put(i * 3 + 2, alpha);
+        }
+        ETC1.ETC1Data data = ETC1.encodeImage(pixmap);
+        pixmap.dispose();
+        ByteBuffer compressed = data.compressedData;
+        byte[] bytes = new byte[compressed.capacity() - data.dataOffset];
+        compressed.position(data.dataOffset);
+        compressed.get(bytes);
+        data.dispose();
+        return bytes;
+    }
+
+}
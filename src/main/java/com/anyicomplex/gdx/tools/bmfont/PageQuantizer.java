@@ -0,0 +1,108 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+/**
+ * <p>Reduces RGBA8888 glyph pages to fewer bits per channel with a 4x4 ordered (Bayer) dither.</p>
+ * <ul>
+ *     <li><b>none</b> keeps RGBA8888.</li>
+ *     <li><b>rgba4444</b> 4 bits per channel, half the texture memory.</li>
+ * </ul>
+ * <p>The dither is tuned for glyph pages: it never spreads error to other texels, so fully transparent padding stays
+ * transparent and nothing bleeds into neighbour glyphs, and values already representable (fully transparent, fully
+ * opaque, flat colors like white or black) are kept exactly, so only the antialiased edges and blended border colors are
+ * dithered. Fully transparent texels are rounded without dither so the page background stays uniform.</p>
+ * @author Yi An
+ *
+ */
+final class PageQuantizer {
+
+    private PageQuantizer(){}
+
+    /** 4x4 Bayer matrix, thresholds are (value + 0.5) / 16. */
+    private static final int[] BAYER = {
+            0, 8, 2, 10,
+            12, 4, 14, 6,
+            3, 11, 1, 9,
+            15, 7, 13, 5
+    };
+
+    /**
+     * @param quantization the page quantization
+     * @return whether the page quantization is supported
+     */
+    static boolean supports(String quantization) {
+        return quantization != null && (quantization.equalsIgnoreCase("none") || quantization.equalsIgnoreCase("rgba4444"));
+    }
+
+    /**
+     * @param quantization the page quantization
+     * @return whether the pages are quantized
+     */
+    static boolean quantizes(String quantization) {
+        return !quantization.equalsIgnoreCase("none");
+    }
+
+    /**
+     * Quantize a page level in place, every channel keeps 8 bits but only takes values representable by the
+     * quantization, so the level can still be written as a PNG and converted without loss at load time.
+     *
+     * @param quantization the page quantization
+     * @param rgba the level in RGBA8888
+     * @param width the level width
+     * @param height the level height
+     */
+    static void quantize(String quantization, byte[] rgba, int width, int height) {
+        if (!quantizes(quantization)) return;
+        for (int y = 0; y < height; y ++) {
+            for (int x = 0; x < width; x ++) {
+                int i = (y * width + x) * 4;
+                // Threshold in 1/512 steps, from 1/32 to 31/32.
+                int threshold = (rgba[i + 3] == 0 ? 8 : BAYER[(y & 3) * 4 + (x & 3)]) * 32 + 16;
+                for (int c = 0; c < 4; c ++) {
+                    int value = rgba[i + c] & 0xFF;
+                    int level = Math.min(15, (value * 15 * 512 / 255 + threshold) >> 9);
+                    rgba[i + c] = (byte) (level * 17);
+                }
+            }
+        }
+    }
+
+    /**
+     * Pack a quantized level as GL_UNSIGNED_SHORT_4_4_4_4 texels in little endian, rows padded to 4 bytes for the
+     * default GL unpack alignment.
+     *
+     * @param rgba the level quantized to rgba4444
+     * @param width the level width
+     * @param height the level height
+     * @return the packed level
+     */
+    static byte[] packRGBA4444(byte[] rgba, int width, int height) {
+        int stride = (width * 2 + 3) & ~3;
+        byte[] packed = new byte[stride * height];
+        for (int y = 0; y < height; y ++) {
+            for (int x = 0; x < width; x ++) {
+                int i = (y * width + x) * 4, o = y * stride + x * 2;
+                int texel = ((rgba[i] & 0xF0) << 8) | ((rgba[i + 1] & 0xF0) << 4) | (rgba[i + 2] & 0xF0) | ((rgba[i + 3] & 0xF0) >> 4);
+                packed[o] = (byte) texel;
+                packed[o + 1] = (byte) (texel >>> 8);
+            }
+        }
+        return packed;
+    }
+
+}
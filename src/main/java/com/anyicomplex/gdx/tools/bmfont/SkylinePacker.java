@@ -0,0 +1,115 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.graphics.g2d.PixmapPacker;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+
+/**
+ * <p>Rectangle-only skyline packer.</p>
+ * <p>Places rectangles exactly like {@link PixmapPacker.SkylineStrategy} does, without allocating any page image, so
+ * glyphs can be packed in any order (and packing can be simulated) before the pages are composed.</p>
+ * @author Yi An
+ *
+ */
+final class SkylinePacker {
+
+    private final int pageWidth, pageHeight, padding;
+    private final boolean backfill;
+    private final Array<Array<Row>> pages = new Array<>();
+
+    /**
+     * @param pageWidth the page width
+     * @param pageHeight the page height
+     * @param padding the padding around rectangles
+     * @param backfill whether rectangles may be placed into earlier pages, false keeps the packing order across pages
+     */
+    SkylinePacker(int pageWidth, int pageHeight, int padding, boolean backfill) {
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.padding = padding;
+        this.backfill = backfill;
+    }
+
+    /**
+     * Place a rectangle, its position is written to {@link Rectangle#x} and {@link Rectangle#y}.
+     *
+     * @param rect the rectangle to place
+     * @return the page index
+     */
+    int pack(Rectangle rect) {
+        int pageWidth = this.pageWidth - padding * 2, pageHeight = this.pageHeight - padding * 2;
+        int rectWidth = (int) rect.width + padding, rectHeight = (int) rect.height + padding;
+        for (int i = backfill ? 0 : Math.max(0, pages.size - 1), n = pages.size; i < n; i ++) {
+            Array<Row> rows = pages.get(i);
+            Row bestRow = null;
+            // Fit in any row before the last.
+            for (int ii = 0, nn = rows.size - 1; ii < nn; ii ++) {
+                Row row = rows.get(ii);
+                if (row.x + rectWidth >= pageWidth) continue;
+                if (row.y + rectHeight >= pageHeight) continue;
+                if (rectHeight > row.height) continue;
+                if (bestRow == null || row.height < bestRow.height) bestRow = row;
+            }
+            if (bestRow == null) {
+                // Fit in last row, increasing height.
+                Row row = rows.peek();
+                if (row.y + rectHeight >= pageHeight) continue;
+                if (row.x + rectWidth < pageWidth) {
+                    row.height = Math.max(row.height, rectHeight);
+                    bestRow = row;
+                } else if (row.y + row.height + rectHeight < pageHeight) {
+                    // Fit in new row.
+                    bestRow = new Row();
+                    bestRow.y = row.y + row.height;
+                    bestRow.height = rectHeight;
+                    rows.add(bestRow);
+                }
+            }
+            if (bestRow != null) {
+                rect.x = bestRow.x;
+                rect.y = bestRow.y;
+                bestRow.x += rectWidth;
+                return i;
+            }
+        }
+        // Fall through, add a new page.
+        Array<Row> rows = new Array<>();
+        Row row = new Row();
+        row.x = padding + rectWidth;
+        row.y = padding;
+        row.height = rectHeight;
+        rows.add(row);
+        pages.add(rows);
+        rect.x = padding;
+        rect.y = padding;
+        return pages.size - 1;
+    }
+
+    /**
+     * @return the amount of pages used so far
+     */
+    int getPageCount() {
+        return pages.size;
+    }
+
+    private static class Row {
+        int x, y, height;
+    }
+
+}
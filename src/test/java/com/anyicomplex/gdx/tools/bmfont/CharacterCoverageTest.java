@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.Array;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks characters not covered by the font are skipped and reported, without changing the other glyphs.
+ * @author Yi An
+ *
+ */
+class CharacterCoverageTest extends HeadlessTestBase {
+
+    @Test
+    void uncoveredCharactersAreSkipped(@TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = LATIN;
+        FileHandle covered = process(font(), new FileHandle(tempDir).child("covered"), config);
+        FileHandle mixed = new FileHandle(tempDir).child("mixed");
+        // DejaVu Sans has no CJK ideographs.
+        config.characters = range(0x4E00, 0x4E0F) + LATIN + range(0x4E10, 0x4E1F);
+        Array<String> reports = captureInfo(() -> process(font(), mixed, config));
+        assertEquals(Array.with("Skipping 65 characters not covered by the font: 7F-9F,4E00-4E1F"), reports);
+        // Plans count the skipped characters, only processing reports them.
+        int[] skipped = new int[1];
+        assertEquals(0, captureInfo(() -> skipped[0] = BitmapFontPacker.plan(font(), config).skipped).size);
+        assertEquals(33 + 32, skipped[0]);
+        assertEquals(covered.child("DejaVuSans.fnt").readString("UTF-8"), mixed.child("DejaVuSans.fnt").readString("UTF-8"));
+    }
+
+}
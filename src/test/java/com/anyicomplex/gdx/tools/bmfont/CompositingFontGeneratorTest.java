@@ -0,0 +1,187 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * <p>Checks {@link CompositingFontGenerator} renders the same glyphs as {@link FreeTypeFontGenerator}, and compares their
+ * speed on styled glyphs.</p>
+ * @author Yi An
+ *
+ */
+class CompositingFontGeneratorTest extends HeadlessTestBase {
+
+    static Stream<Arguments> parameters() {
+        return Stream.of(
+                Arguments.of("plain", (Consumer<FreeTypeFontGenerator.FreeTypeFontParameter>) parameter -> {}),
+                Arguments.of("render-count-4", (Consumer<FreeTypeFontGenerator.FreeTypeFontParameter>) parameter -> parameter.renderCount = 4),
+                Arguments.of("border", (Consumer<FreeTypeFontGenerator.FreeTypeFontParameter>) parameter -> {
+                    parameter.borderWidth = 2;
+                    parameter.borderColor = new Color(0.2f, 0.4f, 0.9f, 0.8f);
+                }),
+                Arguments.of("shadow-negative", (Consumer<FreeTypeFontGenerator.FreeTypeFontParameter>) parameter -> {
+                    parameter.shadowOffsetX = -2;
+                    parameter.shadowOffsetY = 3;
+                }),
+                Arguments.of("border-shadow-padding", (Consumer<FreeTypeFontGenerator.FreeTypeFontParameter>) parameter -> {
+                    parameter.color = new Color(1, 0.8f, 0.1f, 0.9f);
+                    parameter.borderWidth = 1.5f;
+                    parameter.borderStraight = true;
+                    parameter.shadowOffsetX = 2;
+                    parameter.shadowOffsetY = 2;
+                    parameter.shadowColor = new Color(0.3f, 0, 0.3f, 0.5f);
+                    parameter.renderCount = 3;
+                    parameter.padTop = 1;
+                    parameter.padLeft = 2;
+                    parameter.padRight = 3;
+                }),
+                Arguments.of("mono-flip", (Consumer<FreeTypeFontGenerator.FreeTypeFontParameter>) parameter -> {
+                    parameter.mono = true;
+                    parameter.flip = true;
+                    parameter.borderWidth = 1;
+                })
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("parameters")
+    void matchesGenerator(String name, Consumer<FreeTypeFontGenerator.FreeTypeFontParameter> configurer) {
+        FreeTypeFontGenerator.FreeTypeFontParameter parameter = new FreeTypeFontGenerator.FreeTypeFontParameter();
+        parameter.size = 24;
+        parameter.characters = ASCII + range(0x3B1, 0x3C9);
+        configurer.accept(parameter);
+        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(font());
+        CompositingFontGenerator compositing = new CompositingFontGenerator(font(), 0);
+        GlyphCollector expectedCollector = new GlyphCollector(), actualCollector = new GlyphCollector();
+        try {
+            parameter.packer = expectedCollector;
+            FreeTypeFontGenerator.FreeTypeBitmapFontData expected = generator.generateData(parameter);
+            parameter.packer = actualCollector;
+            FreeTypeFontGenerator.FreeTypeBitmapFontData actual = compositing.generateData(parameter);
+            for (int i = 0; i < parameter.characters.length(); i ++) {
+                BitmapFont.Glyph expectedGlyph = expected.getGlyph(parameter.characters.charAt(i));
+                BitmapFont.Glyph actualGlyph = actual.getGlyph(parameter.characters.charAt(i));
+                if (expectedGlyph == null) {
+                    assertNull(actualGlyph);
+                    continue;
+                }
+                String glyphName = "Glyph " + expectedGlyph.id;
+                assertNotNull(actualGlyph, glyphName);
+                assertEquals(expectedGlyph.width, actualGlyph.width, glyphName);
+                assertEquals(expectedGlyph.height, actualGlyph.height, glyphName);
+                assertEquals(expectedGlyph.xoffset, actualGlyph.xoffset, glyphName);
+                assertEquals(expectedGlyph.yoffset, actualGlyph.yoffset, glyphName);
+                assertEquals(expectedGlyph.xadvance, actualGlyph.xadvance, glyphName);
+                Pixmap expectedImage = expectedCollector.getImage(expectedGlyph), actualImage = actualCollector.getImage(actualGlyph);
+                if (expectedImage == null) {
+                    assertNull(actualImage, glyphName);
+                    continue;
+                }
+                assertArrayEquals(BitmapFontPacker.Utils.rgba8888(expectedImage), BitmapFontPacker.Utils.rgba8888(actualImage), glyphName);
+            }
+        }
+        finally {
+            expectedCollector.dispose();
+            actualCollector.dispose();
+            generator.dispose();
+            compositing.dispose();
+        }
+    }
+
+    @Test
+    void blendMatchesPixmap() {
+        Random random = new Random(1);
+        int[] src = new int[256 * 256], dst = new int[256 * 256];
+        for (int i = 0; i < src.length; i ++) {
+            src[i] = random.nextInt() & 0xFFFFFF00 | i >>> 8;
+            dst[i] = random.nextInt() & 0xFFFFFF00 | i & 0xFF;
+        }
+        Pixmap srcPixmap = new Pixmap(256, 256, Pixmap.Format.RGBA8888), dstPixmap = new Pixmap(256, 256, Pixmap.Format.RGBA8888);
+        try {
+            srcPixmap.getPixels().duplicate().asIntBuffer().put(src);
+            dstPixmap.getPixels().duplicate().asIntBuffer().put(dst);
+            for (int i = 0; i < 3; i ++) dstPixmap.drawPixmap(srcPixmap, 0, 0);
+            int[] blended = new int[dst.length];
+            dstPixmap.getPixels().duplicate().asIntBuffer().get(blended);
+            for (int i = 0; i < dst.length; i ++) dst[i] = CompositingFontGenerator.over(src[i], dst[i], 3);
+            assertArrayEquals(blended, dst);
+        }
+        finally {
+            srcPixmap.dispose();
+            dstPixmap.dispose();
+        }
+    }
+
+    /**
+     * Large glyphs with thick borders and shadows, where the generator's re-draws cost the most. Timing depends on the
+     * machine, so it only runs with {@code -Dbmfont.checkTiming=true}.
+     */
+    @Test
+    @EnabledIfSystemProperty(named = "bmfont.checkTiming", matches = "true")
+    void benchmark() {
+        FreeTypeFontGenerator.FreeTypeFontParameter parameter = new FreeTypeFontGenerator.FreeTypeFontParameter();
+        parameter.size = 72;
+        parameter.characters = ASCII;
+        parameter.borderWidth = 4;
+        parameter.shadowOffsetX = 4;
+        parameter.shadowOffsetY = 4;
+        parameter.renderCount = 4;
+        parameter.kerning = false;
+        FreeTypeFontGenerator generator = new FreeTypeFontGenerator(font());
+        CompositingFontGenerator compositing = new CompositingFontGenerator(font(), 0);
+        try {
+            long generatorNanos = median(generator, parameter), compositingNanos = median(compositing, parameter);
+            assertTrue(compositingNanos < generatorNanos, "single pass " + compositingNanos / 1000000 + " ms, generator " + generatorNanos / 1000000 + " ms");
+        }
+        finally {
+            generator.dispose();
+            compositing.dispose();
+        }
+    }
+
+    private static long median(FreeTypeFontGenerator generator, FreeTypeFontGenerator.FreeTypeFontParameter parameter) {
+        long[] nanos = new long[5];
+        for (int i = -2; i < nanos.length; i ++) {
+            GlyphCollector collector = new GlyphCollector();
+            parameter.packer = collector;
+            long before = System.nanoTime();
+            generator.generateData(parameter);
+            long after = System.nanoTime();
+            collector.dispose();
+            if (i >= 0) nanos[i] = after - before;
+        }
+        Arrays.sort(nanos);
+        return nanos[nanos.length / 2];
+    }
+
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Seeds a {@link DynamicGlyphAtlas} with a generated font and checks rasterization on demand, LRU eviction and counters.
+ * @author Yi An
+ *
+ */
+class DynamicGlyphAtlasTest extends HeadlessTestBase {
+
+    @Test
+    void rasterizesAndEvictsLeastRecentlyUsed(@TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = ASCII;
+        FileHandle outputDir = new FileHandle(tempDir);
+        assertEquals(BitmapFontPacker.ExitCode.SUCCESS, BitmapFontPacker.process(font(), outputDir, config));
+        FontFaceRegistry registry = new FontFaceRegistry();
+        FontFaceRegistry.FontFace fontFace = registry.acquire(font());
+        // A single 64x64 page holds 2x3 cells of the 16px font, as wide as its largest advance.
+        DynamicGlyphAtlas atlas = new DynamicGlyphAtlas(fontFace, outputDir.child("DejaVuSans.fnt"), config, 64, 1);
+        try {
+            assertEquals(6, atlas.getCapacity());
+            BitmapFont.Glyph seeded = atlas.getData().getGlyph('A');
+            assertNotNull(seeded);
+            assertEquals(1, atlas.getHits());
+            String greek = range(0x3B1, 0x3B7);
+            for (int i = 0; i < greek.length(); i ++) {
+                BitmapFont.Glyph glyph = atlas.getData().getGlyph(greek.charAt(i));
+                assertNotNull(glyph);
+                assertEquals(greek.charAt(i), glyph.id);
+                assertEquals(atlas.getSeededPageCount(), glyph.page);
+                if (i == 1) atlas.getData().getGlyph(greek.charAt(0));
+            }
+            assertEquals(2, atlas.getHits());
+            assertEquals(7, atlas.getMisses());
+            assertEquals(1, atlas.getEvictions());
+            assertEquals(6, atlas.getDynamicGlyphCount());
+            // The first glyph was used again after the second, so the second one was evicted.
+            assertNotNull(resident(atlas, greek.charAt(0)));
+            assertNull(resident(atlas, greek.charAt(1)));
+            // Seeded glyphs are pinned.
+            assertSame(seeded, atlas.getData().getGlyph('A'));
+            assertEquals(1, atlas.getPages().size - atlas.getSeededPageCount());
+        }
+        finally {
+            atlas.dispose();
+            registry.release(fontFace);
+        }
+    }
+
+    @Test
+    void dynamicGlyphsMatchGeneratedOnes(@TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = ASCII;
+        config.padTop = 1;
+        config.padLeft = 2;
+        FileHandle seedDir = new FileHandle(tempDir).child("seed");
+        FileHandle fullDir = new FileHandle(tempDir).child("full");
+        assertEquals(BitmapFontPacker.ExitCode.SUCCESS, BitmapFontPacker.process(font(), seedDir, config));
+        config.characters = SCRIPTS;
+        assertEquals(BitmapFontPacker.ExitCode.SUCCESS, BitmapFontPacker.process(font(), fullDir, config));
+        BitmapFont.BitmapFontData expected = new BitmapFont.BitmapFontData(fullDir.child("DejaVuSans.fnt"), false);
+        FontFaceRegistry registry = new FontFaceRegistry();
+        FontFaceRegistry.FontFace fontFace = registry.acquire(font());
+        DynamicGlyphAtlas atlas = new DynamicGlyphAtlas(fontFace, seedDir.child("DejaVuSans.fnt"), config, -1, 1);
+        try {
+            for (char ch : new char[] { '\u03B1', '\u0416', '\u00C5' }) {
+                BitmapFont.Glyph expectedGlyph = expected.getGlyph(ch), actualGlyph = atlas.getData().getGlyph(ch);
+                assertEquals(expectedGlyph.width, actualGlyph.width);
+                assertEquals(expectedGlyph.height, actualGlyph.height);
+                assertEquals(expectedGlyph.xoffset, actualGlyph.xoffset);
+                assertEquals(expectedGlyph.yoffset, actualGlyph.yoffset);
+                assertEquals(expectedGlyph.xadvance, actualGlyph.xadvance);
+                assertEquals(expectedGlyph.getKerning('A'), actualGlyph.getKerning('A'));
+            }
+        }
+        finally {
+            atlas.dispose();
+            registry.release(fontFace);
+        }
+    }
+
+    @Test
+    void startsWithoutSeed(@TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = SCRIPTS;
+        FileHandle outputDir = new FileHandle(tempDir);
+        assertEquals(BitmapFontPacker.ExitCode.SUCCESS, BitmapFontPacker.process(font(), outputDir, config));
+        BitmapFont.BitmapFontData expected = new BitmapFont.BitmapFontData(outputDir.child("DejaVuSans.fnt"), false);
+        FontFaceRegistry registry = new FontFaceRegistry();
+        FontFaceRegistry.FontFace fontFace = registry.acquire(font());
+        DynamicGlyphAtlas atlas = new DynamicGlyphAtlas(fontFace, null, config, 128, 2);
+        GL20 gl = Gdx.gl;
+        Gdx.gl = Gdx.gl20 = noopGL();
+        try {
+            assertEquals(0, atlas.getSeededPageCount());
+            assertEquals(1, atlas.getPages().size);
+            // The font can be created before any glyph is rasterized.
+            BitmapFont font = atlas.newFont();
+            assertEquals(1, font.getRegions().size);
+            assertEquals(expected.lineHeight, atlas.getData().lineHeight);
+            assertEquals(expected.getGlyph(' ').xadvance, atlas.getData().getGlyph(' ').xadvance);
+            // Wide glyphs fit the cells.
+            for (char ch : new char[] { 'W', '\u0416', '\u00C5', '\u03A8' }) {
+                BitmapFont.Glyph expectedGlyph = expected.getGlyph(ch), actualGlyph = atlas.getData().getGlyph(ch);
+                assertNotNull(actualGlyph);
+                assertEquals(ch, actualGlyph.id);
+                assertEquals(0, actualGlyph.page);
+                assertEquals(expectedGlyph.width, actualGlyph.width);
+                assertEquals(expectedGlyph.height, actualGlyph.height);
+                assertEquals(expectedGlyph.xadvance, actualGlyph.xadvance);
+            }
+            assertEquals(0, atlas.getOversizedCount());
+            assertEquals(1, atlas.getPages().size);
+            assertEquals(1, font.getRegions().size);
+            font.dispose();
+        }
+        finally {
+            atlas.dispose();
+            Gdx.gl = Gdx.gl20 = gl;
+            registry.release(fontFace);
+        }
+    }
+
+    /**
+     * @return a GL ignoring every call, so textures can be created headless
+     */
+    static GL20 noopGL() {
+        return (GL20) Proxy.newProxyInstance(GL20.class.getClassLoader(), new Class<?>[] { GL20.class }, (proxy, method, args) -> {
+            Class<?> type = method.getReturnType();
+            if (type == int.class) return 0;
+            if (type == boolean.class) return false;
+            return null;
+        });
+    }
+
+    static BitmapFont.Glyph resident(DynamicGlyphAtlas atlas, char ch) {
+        BitmapFont.Glyph[] page = atlas.getData().glyphs[ch >>> 9];
+        return page == null ? null : page[ch & 511];
+    }
+
+}
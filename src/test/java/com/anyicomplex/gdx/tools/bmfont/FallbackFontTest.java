@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks fallback fonts render the characters missing from the input font, on its baseline and kerned apart.
+ * @author Yi An
+ *
+ */
+class FallbackFontTest extends HeadlessTestBase {
+
+    @Test
+    void fallbackFontsFillMissingCharacters(@TempDir File tempDir) {
+        String hebrew = range(0x5D0, 0x5EA);
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = LATIN + hebrew;
+        config.fallbackFonts = new FileHandle[] { font() };
+        FileHandle mergedDir = process(serifFont(), new FileHandle(tempDir).child("merged"), config);
+        config.fallbackFonts = null;
+        config.characters = LATIN;
+        FileHandle serifDir = process(serifFont(), new FileHandle(tempDir).child("serif"), config);
+        config.characters = hebrew;
+        FileHandle sansDir = process(font(), new FileHandle(tempDir).child("sans"), config);
+        FileHandle mergedFnt = mergedDir.child("DejaVuSerif.fnt");
+        validate(mergedFnt, false);
+        String merged = mergedFnt.readString("UTF-8");
+        Map<Integer, String> mergedMetrics = glyphMetrics(mergedFnt), serifMetrics = glyphMetrics(serifDir.child("DejaVuSerif.fnt")),
+                sansMetrics = glyphMetrics(sansDir.child("DejaVuSans.fnt"));
+        String sans = sansDir.child("DejaVuSans.fnt").readString("UTF-8");
+        int base = intField(merged, "base"), sansBase = intField(sans, "base");
+        for (int i = 0; i < hebrew.length(); i ++) {
+            int c = hebrew.charAt(i);
+            String expected = sansMetrics.get(c), actual = mergedMetrics.get(c);
+            assertNotNull(actual, "Missing fallback glyph " + c);
+            // Same glyph, sitting on the input font's baseline.
+            assertEquals(expected.replaceAll("yoffset=\\S+ ", ""), actual.replaceAll("yoffset=\\S+ ", ""), "Glyph " + c);
+            assertEquals(intField(expected, "yoffset") - sansBase, intField(actual, "yoffset") - base, "Glyph " + c + " baseline");
+        }
+        for (int i = 0; i < LATIN.length(); i ++) {
+            int c = LATIN.charAt(i);
+            assertEquals(serifMetrics.get(c), mergedMetrics.get(c), "Glyph " + c);
+        }
+        // Each face kerns its own glyphs only.
+        Matcher kerning = Pattern.compile("kerning first=(\\d+)\\s+second=(\\d+)").matcher(merged);
+        int pairs = 0;
+        while (kerning.find()) {
+            int first = Integer.parseInt(kerning.group(1)), second = Integer.parseInt(kerning.group(2));
+            assertEquals(hebrew.indexOf(first) >= 0, hebrew.indexOf(second) >= 0, "Kerning across faces " + first + "," + second);
+            pairs ++;
+        }
+        assertTrue(pairs > 0, "No kerning");
+    }
+
+    static int intField(String text, String name) {
+        Matcher matcher = Pattern.compile("\\b" + name + "=(-?\\d+)").matcher(text);
+        assertTrue(matcher.find(), "Missing " + name);
+        return Integer.parseInt(matcher.group(1));
+    }
+
+}
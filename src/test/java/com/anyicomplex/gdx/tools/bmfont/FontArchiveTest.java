@@ -0,0 +1,79 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.utils.StreamUtils;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks a {@link FontArchive} holds the same files as a regular run, readable by the archive and by any zip reader.
+ * @author Yi An
+ *
+ */
+class FontArchiveTest extends HeadlessTestBase {
+
+    @ParameterizedTest
+    @ValueSource(strings = { "png", "etc1" })
+    void archiveHoldsSameFiles(String pageFormat, @TempDir File tempDir) throws IOException {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = SCRIPTS;
+        config.pageFormat = pageFormat;
+        config.pageWidth = 128;
+        config.pageHeight = 128;
+        config.pageIndex = true;
+        FileHandle files = process(font(), new FileHandle(tempDir).child("files"), config);
+        config.archive = true;
+        FileHandle archived = process(font(), new FileHandle(tempDir).child("archived"), config);
+        assertArrayEquals(new String[] { "DejaVuSans.zip" }, Arrays.stream(archived.list()).map(FileHandle::name).toArray(String[]::new));
+        FontArchive archive = FontArchive.open(archived.child("DejaVuSans.zip"));
+        String[] names = archive.getNames();
+        assertEquals("DejaVuSans.fnt", names[0]);
+        assertEquals(files.list().length, names.length);
+        for (String name : names) {
+            ByteBuffer entry = archive.get(name);
+            byte[] bytes = new byte[entry.remaining()];
+            entry.get(bytes);
+            assertArrayEquals(files.child(name).readBytes(), bytes, name + " differs");
+        }
+        // Still a regular zip file, every entry stored.
+        try (ZipFile zip = new ZipFile(archived.child("DejaVuSans.zip").file())) {
+            assertEquals(names.length + 1, zip.size());
+            // The index is streamed last, once all the offsets are known.
+            assertEquals("DejaVuSans.index", zip.stream().reduce((first, second) -> second).map(ZipEntry::getName).orElse(null));
+            zip.stream().forEach(entry -> assertEquals(ZipEntry.STORED, entry.getMethod(), entry.getName()));
+            for (String name : names) {
+                try (InputStream input = zip.getInputStream(zip.getEntry(name))) {
+                    assertArrayEquals(files.child(name).readBytes(), StreamUtils.copyStreamToByteArray(input), name + " differs");
+                }
+            }
+        }
+    }
+
+}
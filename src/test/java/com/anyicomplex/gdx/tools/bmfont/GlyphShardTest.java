@@ -0,0 +1,106 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.Array;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link GlyphShard} files keep the glyphs and kerning of a shard, so merged shards match a single run.
+ * @author Yi An
+ *
+ */
+class GlyphShardTest extends HeadlessTestBase {
+
+    @Test
+    void shardsMergeLikeSingleRun(@TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = SCRIPTS;
+        FileHandle single = process(font(), new FileHandle(tempDir).child("single"), config);
+        FileHandle merged = processShards(font(), new FileHandle(tempDir), config, 3);
+        BitmapFont.BitmapFontData expected = validate(single.child("DejaVuSans.fnt"), false);
+        BitmapFont.BitmapFontData actual = validate(merged.child("DejaVuSans.fnt"), false);
+        assertEquals(expected.lineHeight, actual.lineHeight);
+        assertEquals(expected.capHeight, actual.capHeight);
+        for (int i = 0; i < SCRIPTS.length(); i ++) {
+            BitmapFont.Glyph expectedGlyph = expected.getGlyph(SCRIPTS.charAt(i));
+            BitmapFont.Glyph actualGlyph = actual.getGlyph(SCRIPTS.charAt(i));
+            if (expectedGlyph == null) {
+                assertNull(actualGlyph);
+                continue;
+            }
+            assertNotNull(actualGlyph, "Missing glyph " + expectedGlyph.id);
+            assertEquals(expectedGlyph.width, actualGlyph.width);
+            assertEquals(expectedGlyph.height, actualGlyph.height);
+            assertEquals(expectedGlyph.xoffset, actualGlyph.xoffset);
+            assertEquals(expectedGlyph.yoffset, actualGlyph.yoffset);
+            assertEquals(expectedGlyph.xadvance, actualGlyph.xadvance);
+            for (int j = 0; j < SCRIPTS.length(); j ++) {
+                char second = SCRIPTS.charAt(j);
+                assertEquals(expectedGlyph.getKerning(second), actualGlyph.getKerning(second), "Kerning " + expectedGlyph.id + "," + (int) second);
+            }
+        }
+    }
+
+    @Test
+    void keepsKerningBeyondByteRange() throws IOException {
+        GlyphShard shard = new GlyphShard();
+        shard.name = "DejaVuSans";
+        shard.count = 1;
+        GlyphIndex index = new GlyphIndex();
+        BitmapFont.Glyph latin = glyph('A'), supplementary = glyph(0x1D5A0);
+        index.put(latin);
+        index.put(supplementary);
+        // Pairs with a supplementary codepoint are kept as int, large sizes kern them beyond a byte.
+        index.setKerning(latin, 0x1D5A0, -300);
+        index.setKerning(supplementary, 'A', 200);
+        index.setKerning(supplementary, 0x1D5A0, -7);
+        GlyphCollector collector = new GlyphCollector();
+        GlyphCollector readCollector = new GlyphCollector();
+        try {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            GlyphShard.write(output, shard, new BitmapFont.BitmapFontData(), Array.with(latin, supplementary), index, collector);
+            GlyphIndex read = new GlyphIndex();
+            GlyphShard.read(new ByteArrayInputStream(output.toByteArray()), new BitmapFont.BitmapFontData(), read, readCollector);
+            assertEquals(-300, read.getKerning(read.get('A'), 0x1D5A0));
+            assertEquals(200, read.getKerning(read.get(0x1D5A0), 'A'));
+            assertEquals(-7, read.getKerning(read.get(0x1D5A0), 0x1D5A0));
+        }
+        finally {
+            collector.dispose();
+            readCollector.dispose();
+        }
+    }
+
+    private static BitmapFont.Glyph glyph(int codepoint) {
+        BitmapFont.Glyph glyph = new BitmapFont.Glyph();
+        glyph.id = codepoint;
+        glyph.xadvance = 10;
+        return glyph;
+    }
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * <p>Generates fonts under representative configurations and compares the outputs to the golden files in
+ * {@code src/test/resources/golden}. .fnt files are compared as text, PNG pages by pixels and KTX pages by bytes.</p>
+ * <p>Run with {@code -Dbmfont.updateGolden=true} to regenerate the golden files after an intended output change.</p>
+ * @author Yi An
+ *
+ */
+class GoldenOutputTest extends HeadlessTestBase {
+
+    static Stream<Arguments> configurations() {
+        return Stream.of(
+                golden("default", config -> {}),
+                golden("border-shadow", config -> {
+                    config.size = 20;
+                    config.borderWidth = 2;
+                    config.borderColor = Color.NAVY;
+                    config.shadowOffsetX = 2;
+                    config.shadowOffsetY = 2;
+                }),
+                golden("xml-flip-no-kerning", config -> {
+                    config.fntFormat = "xml";
+                    config.flip = true;
+                    config.kerning = false;
+                }),
+                golden("placement-block", config -> {
+                    config.characters = SCRIPTS;
+                    config.pageWidth = 128;
+                    config.pageHeight = 128;
+                    config.placement = "block";
+                    config.pageIndex = true;
+                }),
+                golden("ktx-mipmaps", config -> {
+                    config.size = 12;
+                    config.characters = ASCII;
+                    config.pageWidth = 128;
+                    config.pageHeight = 128;
+                    config.pageFormat = "ktx";
+                    config.genMipMaps = true;
+                }),
+                golden("eac-r11", config -> {
+                    config.characters = ASCII;
+                    config.pageFormat = "eacR11";
+                }),
+                golden("rgba4444-border", config -> {
+                    config.characters = ASCII;
+                    config.borderWidth = 1;
+                    config.borderColor = Color.NAVY;
+                    config.pageQuantization = "rgba4444";
+                }),
+                golden("rgba4444-ktx-mipmaps", config -> {
+                    config.size = 12;
+                    config.characters = ASCII;
+                    config.pageWidth = 128;
+                    config.pageHeight = 128;
+                    config.pageFormat = "ktx";
+                    config.pageQuantization = "rgba4444";
+                    config.genMipMaps = true;
+                })
+        );
+    }
+
+    static Arguments golden(String name, Consumer<BitmapFontPacker.Configuration> configurer) {
+        return Arguments.of(name, configurer);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("configurations")
+    void matchesGolden(String name, Consumer<BitmapFontPacker.Configuration> configurer, @TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.size = 16;
+        configurer.accept(config);
+        FileHandle outputDir = process(font(), new FileHandle(tempDir), config);
+        if (config.fntFormat.equalsIgnoreCase("txt")) validate(outputDir.child("DejaVuSans.fnt"), config.flip);
+        compareGolden("golden/" + name, outputDir);
+    }
+
+    static void compareGolden(String goldenPath, FileHandle outputDir) {
+        FileHandle[] outputs = outputDir.list();
+        Arrays.sort(outputs, (a, b) -> a.name().compareTo(b.name()));
+        if (UPDATE) {
+            FileHandle goldenDir = sourceResource(goldenPath);
+            goldenDir.deleteDirectory();
+            goldenDir.mkdirs();
+            for (FileHandle output : outputs) output.copyTo(goldenDir);
+            return;
+        }
+        FileHandle goldenDir = resource(goldenPath);
+        assertNotNull(goldenDir, "Missing golden files " + goldenPath + ", run with -Dbmfont.updateGolden=true");
+        String[] expectedNames = Arrays.stream(goldenDir.list()).map(FileHandle::name).sorted().toArray(String[]::new);
+        String[] actualNames = Arrays.stream(outputs).map(FileHandle::name).toArray(String[]::new);
+        assertArrayEquals(expectedNames, actualNames, "Output files differ from " + goldenPath);
+        for (FileHandle output : outputs) {
+            FileHandle golden = goldenDir.child(output.name());
+            String extension = output.extension().toLowerCase();
+            if (extension.equals("png")) assertSamePixels(golden, output);
+            else if (extension.equals("ktx")) assertArrayEquals(golden.readBytes(), output.readBytes(), output.name() + " differs");
+            else assertEquals(golden.readString("UTF-8"), output.readString("UTF-8"), output.name() + " differs");
+        }
+    }
+
+    static void assertSamePixels(FileHandle expected, FileHandle actual) {
+        Pixmap expectedPixmap = new Pixmap(expected), actualPixmap = new Pixmap(actual);
+        try {
+            assertEquals(expectedPixmap.getWidth(), actualPixmap.getWidth(), actual.name() + " width differs");
+            assertEquals(expectedPixmap.getHeight(), actualPixmap.getHeight(), actual.name() + " height differs");
+            int differences = 0;
+            for (int y = 0; y < expectedPixmap.getHeight(); y ++) {
+                for (int x = 0; x < expectedPixmap.getWidth(); x ++) {
+                    if (expectedPixmap.getPixel(x, y) != actualPixmap.getPixel(x, y)) differences ++;
+                }
+            }
+            assertEquals(0, differences, actual.name() + " pixels differ");
+        }
+        finally {
+            expectedPixmap.dispose();
+            actualPixmap.dispose();
+        }
+    }
+
+}
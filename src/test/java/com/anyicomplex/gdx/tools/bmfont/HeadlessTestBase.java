@@ -0,0 +1,220 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.ApplicationAdapter;
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.backends.headless.HeadlessApplication;
+import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.graphics.g2d.freetype.FreeTypeFontGenerator;
+import com.badlogic.gdx.utils.Array;
+import org.junit.jupiter.api.BeforeAll;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * <p>Base of the tests, runs libGDX headless so no display is needed, and holds the character sets and the helpers
+ * generating and checking fonts shared by the tests.</p>
+ * <p>The bundled fonts are DejaVu Sans and DejaVu Serif, see {@code fonts/DejaVuSans-LICENSE.txt}.</p>
+ * @author Yi An
+ *
+ */
+abstract class HeadlessTestBase {
+
+    /** Set to true to write the outputs of the tests as the new golden files and baselines. */
+    static final boolean UPDATE = Boolean.getBoolean("bmfont.updateGolden");
+
+    static final String LATIN = FreeTypeFontGenerator.DEFAULT_CHARS;
+    static final String ASCII = range(0x20, 0x7E);
+    /** Latin, Greek and Cyrillic. */
+    static final String SCRIPTS = LATIN + range(0x391, 0x3A9) + range(0x3B1, 0x3C9) + range(0x410, 0x44F);
+
+    @BeforeAll
+    static void initHeadless() {
+        synchronized (HeadlessTestBase.class) {
+            if (Gdx.app == null) {
+                HeadlessApplicationConfiguration configuration = new HeadlessApplicationConfiguration();
+                configuration.updatesPerSecond = -1;
+                new HeadlessApplication(new ApplicationAdapter() {}, configuration);
+            }
+        }
+    }
+
+    /**
+     * @param path the path of a test resource
+     * @return the test resource as an absolute file, null if not exists
+     */
+    static FileHandle resource(String path) {
+        URL url = HeadlessTestBase.class.getClassLoader().getResource(path);
+        if (url == null) return null;
+        try {
+            return new FileHandle(new File(url.toURI()));
+        } catch (URISyntaxException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * @param path the path of a test resource
+     * @return the source of the test resource, where updated golden files are written
+     */
+    static FileHandle sourceResource(String path) {
+        return new FileHandle(new File(System.getProperty("user.dir"), "src/test/resources/" + path));
+    }
+
+    /**
+     * @return the bundled font
+     */
+    static FileHandle font() {
+        return resource("fonts/DejaVuSans.ttf");
+    }
+
+    /**
+     * @return the bundled serif font, it has no Hebrew nor Arabic glyphs
+     */
+    static FileHandle serifFont() {
+        return resource("fonts/DejaVuSerif.ttf");
+    }
+
+    /**
+     * @return the defined codepoints from start to end inclusive
+     */
+    static String range(int start, int end) {
+        StringBuilder builder = new StringBuilder();
+        for (int codepoint = start; codepoint <= end; codepoint ++) {
+            if (Character.isDefined(codepoint)) builder.appendCodePoint(codepoint);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Process a font and check it succeeds.
+     *
+     * @return the output directory
+     */
+    static FileHandle process(FileHandle fontFile, FileHandle outputDir, BitmapFontPacker.Configuration config) {
+        assertEquals(BitmapFontPacker.ExitCode.SUCCESS, BitmapFontPacker.process(fontFile, outputDir, config));
+        return outputDir;
+    }
+
+    /**
+     * Process a font as shards into {@code shards} of the work directory, then merge them into {@code merged}.
+     *
+     * @return the directory of the merged font
+     */
+    static FileHandle processShards(FileHandle fontFile, FileHandle workDir, BitmapFontPacker.Configuration config, int count) {
+        FileHandle shards = workDir.child("shards"), merged = workDir.child("merged");
+        shards.mkdirs();
+        for (int i = 0; i < count; i ++) {
+            assertEquals(BitmapFontPacker.ExitCode.SUCCESS,
+                    BitmapFontPacker.processShard(fontFile, shards.child(fontFile.nameWithoutExtension() + "_" + i + ".shard"), config, i, count, false));
+        }
+        assertEquals(BitmapFontPacker.ExitCode.SUCCESS, BitmapFontPacker.mergeShards(shards.list(".shard"), merged, config, false));
+        return merged;
+    }
+
+    /**
+     * Run with the informative messages of the packer captured instead of logged.
+     *
+     * @return the captured messages in order
+     */
+    static Array<String> captureInfo(Runnable runnable) {
+        Array<String> messages = new Array<>();
+        BitmapFontPacker.PlatformSupport platformSupport = BitmapFontPacker.platformSupport;
+        BitmapFontPacker.platformSupport = new BitmapFontPacker.PlatformSupport() {
+            @Override
+            public void info(String tag, String message) {
+                synchronized (messages) {
+                    messages.add(message);
+                }
+            }
+        };
+        try {
+            runnable.run();
+        }
+        finally {
+            BitmapFontPacker.platformSupport = platformSupport;
+        }
+        return messages;
+    }
+
+    /**
+     * Parse the size, offsets and advance of every glyph of a text .fnt file by codepoint.
+     */
+    static Map<Integer, String> glyphMetrics(FileHandle fntFile) {
+        Map<Integer, String> metrics = new HashMap<>();
+        Pattern pattern = Pattern.compile("char id=(\\d+)\\s+x=\\S+\\s+y=\\S+\\s+(width=.*xadvance=\\S+)");
+        for (String line : fntFile.readString("UTF-8").split("\n")) {
+            Matcher matcher = pattern.matcher(line);
+            if (matcher.find()) metrics.put(Integer.parseInt(matcher.group(1)), matcher.group(2).replaceAll("\\s+", " "));
+        }
+        return metrics;
+    }
+
+    /**
+     * Reparse a .fnt file with libGDX and check every glyph lies in its page.
+     */
+    static BitmapFont.BitmapFontData validate(FileHandle fntFile, boolean flip) {
+        BitmapFont.BitmapFontData data = new BitmapFont.BitmapFontData(fntFile, flip);
+        String[] imagePaths = data.getImagePaths();
+        int[][] pageSizes = new int[imagePaths.length][];
+        for (int i = 0; i < imagePaths.length; i ++) {
+            FileHandle pageFile = new FileHandle(imagePaths[i]);
+            assertTrue(pageFile.exists(), "Missing page " + pageFile.name());
+            pageSizes[i] = pageSize(pageFile);
+        }
+        int glyphCount = 0;
+        for (BitmapFont.Glyph[] page : data.glyphs) {
+            if (page == null) continue;
+            for (BitmapFont.Glyph glyph : page) {
+                if (glyph == null) continue;
+                glyphCount ++;
+                if (glyph.width == 0 || glyph.height == 0) continue;
+                assertTrue(glyph.page >= 0 && glyph.page < pageSizes.length, "Glyph " + glyph.id + " on missing page " + glyph.page);
+                assertTrue(glyph.srcX >= 0 && glyph.srcX + glyph.width <= pageSizes[glyph.page][0], "Glyph " + glyph.id + " out of page");
+                assertTrue(glyph.srcY >= 0 && glyph.srcY + glyph.height <= pageSizes[glyph.page][1], "Glyph " + glyph.id + " out of page");
+            }
+        }
+        assertTrue(glyphCount > 0, "No glyphs parsed");
+        return data;
+    }
+
+    static int[] pageSize(FileHandle pageFile) {
+        if (pageFile.extension().equalsIgnoreCase("ktx")) {
+            ByteBuffer header = ByteBuffer.wrap(pageFile.readBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            return new int[] { header.getInt(36), header.getInt(40) };
+        }
+        Pixmap pixmap = new Pixmap(pageFile);
+        int[] size = new int[] { pixmap.getWidth(), pixmap.getHeight() };
+        pixmap.dispose();
+        return size;
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.g2d.BitmapFont;
+import com.badlogic.gdx.utils.Array;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks kerning pairs below the threshold or missing from the corpus are pruned, and the pruning is reported.
+ * @author Yi An
+ *
+ */
+class KerningPruningTest extends HeadlessTestBase {
+
+    @Test
+    void kerningIsPruned(@TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = LATIN;
+        FileHandle full = process(font(), new FileHandle(tempDir).child("full"), config);
+        FileHandle threshold = new FileHandle(tempDir).child("threshold");
+        FileHandle corpus = new FileHandle(tempDir).child("corpus");
+        Array<String> reports = captureInfo(() -> {
+            config.kerningThreshold = 2;
+            process(font(), threshold, config);
+            config.kerningThreshold = 0;
+            config.kerningCorpus = "AVATAR\nTo Yvonne";
+            process(font(), corpus, config);
+        });
+        BitmapFont.BitmapFontData fullData = validate(full.child("DejaVuSans.fnt"), false);
+        BitmapFont.BitmapFontData thresholdData = validate(threshold.child("DejaVuSans.fnt"), false);
+        BitmapFont.BitmapFontData corpusData = validate(corpus.child("DejaVuSans.fnt"), false);
+        int fullPairs = 0, thresholdPairs = 0, corpusPairs = 0;
+        for (int i = 0; i < LATIN.length(); i ++) {
+            BitmapFont.Glyph fullGlyph = fullData.getGlyph(LATIN.charAt(i));
+            if (fullGlyph == null) continue;
+            for (int j = 0; j < LATIN.length(); j ++) {
+                char second = LATIN.charAt(j);
+                int kerning = fullGlyph.getKerning(second);
+                if (kerning != 0) fullPairs ++;
+                int expected = Math.abs(kerning) < 2 ? 0 : kerning;
+                assertEquals(expected, thresholdData.getGlyph(LATIN.charAt(i)).getKerning(second));
+                if (expected != 0) thresholdPairs ++;
+                expected = config.kerningCorpus.contains("" + (char) fullGlyph.id + second) ? kerning : 0;
+                assertEquals(expected, corpusData.getGlyph(LATIN.charAt(i)).getKerning(second));
+                if (expected != 0) corpusPairs ++;
+            }
+        }
+        assertTrue(thresholdPairs > 0 && thresholdPairs < fullPairs, thresholdPairs + " of " + fullPairs);
+        assertTrue(corpusPairs > 0 && corpusPairs < thresholdPairs, corpusPairs + " of " + fullPairs);
+        assertTrue(corpus.child("DejaVuSans.fnt").length() < full.child("DejaVuSans.fnt").length());
+        // Every pair of the font is reported, kept or pruned.
+        int total = kerningCount(full.child("DejaVuSans.fnt")), thresholdKept = kerningCount(threshold.child("DejaVuSans.fnt")),
+                corpusKept = kerningCount(corpus.child("DejaVuSans.fnt"));
+        assertEquals(thresholdPairs, thresholdKept);
+        assertEquals(corpusPairs, corpusKept);
+        Array<String> pruned = new Array<>();
+        for (String report : reports) {
+            if (report.startsWith("Kerning pairs pruned")) pruned.add(report);
+        }
+        assertEquals(Array.with("Kerning pairs pruned: " + (total - thresholdKept) + " of " + total + ", " + thresholdKept + " kept.",
+                "Kerning pairs pruned: " + (total - corpusKept) + " of " + total + ", " + corpusKept + " kept."), pruned);
+    }
+
+    static int kerningCount(FileHandle fntFile) {
+        Matcher matcher = Pattern.compile("kernings count=(\\d+)").matcher(fntFile.readString("UTF-8"));
+        assertTrue(matcher.find(), "Missing kernings in " + fntFile.name());
+        return Integer.parseInt(matcher.group(1));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks a page array file holds the separate pages as its layers, with the same glyphs on the same page ids.
+ * @author Yi An
+ *
+ */
+class PageArrayTest extends HeadlessTestBase {
+
+    @ParameterizedTest
+    @ValueSource(strings = { "png", "ktx" })
+    void pageArrayHoldsPages(String pageFormat, @TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = SCRIPTS;
+        config.pageWidth = 128;
+        config.pageHeight = 128;
+        config.pageFormat = pageFormat;
+        FileHandle pagesDir = process(font(), new FileHandle(tempDir).child("pages"), config);
+        config.pageArray = true;
+        FileHandle arrayDir = process(font(), new FileHandle(tempDir).child("array"), config);
+        FileHandle[] pages = pagesDir.list("." + pageFormat);
+        Arrays.sort(pages, (a, b) -> Integer.compare(pageNumber(a), pageNumber(b)));
+        assertTrue(pages.length > 1, "Expected several pages");
+        FileHandle arrayFile = arrayDir.child("DejaVuSans." + pageFormat);
+        assertEquals(2, arrayDir.list().length);
+        // Same glyphs on the same page ids, every page naming the array file.
+        assertEquals(pagesDir.child("DejaVuSans.fnt").readString("UTF-8").replaceAll("DejaVuSans_\\d+\\.", "DejaVuSans."),
+                arrayDir.child("DejaVuSans.fnt").readString("UTF-8"));
+        if (pageFormat.equals("ktx")) {
+            ByteBuffer array = ByteBuffer.wrap(arrayFile.readBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            assertEquals(pages.length, array.getInt(48), "Array elements");
+            assertEquals(1, array.getInt(56), "Mip levels");
+            int layerSize = 128 * 128 * 4;
+            assertEquals(layerSize * pages.length, array.getInt(64));
+            for (int i = 0; i < pages.length; i ++) {
+                byte[] page = pages[i].readBytes(), layer = new byte[layerSize];
+                array.position(68 + i * layerSize);
+                array.get(layer);
+                assertArrayEquals(Arrays.copyOfRange(page, 68, 68 + layerSize), layer, "Layer " + i + " differs");
+            }
+            return;
+        }
+        Pixmap stacked = new Pixmap(arrayFile);
+        try {
+            assertEquals(128, stacked.getWidth());
+            assertEquals(128 * pages.length, stacked.getHeight());
+            for (int i = 0; i < pages.length; i ++) {
+                Pixmap page = new Pixmap(pages[i]);
+                for (int y = 0; y < 128; y ++) {
+                    for (int x = 0; x < 128; x ++) {
+                        if (page.getPixel(x, y) != stacked.getPixel(x, i * 128 + y)) fail("Layer " + i + " differs at " + x + "," + y);
+                    }
+                }
+                page.dispose();
+            }
+        }
+        finally {
+            stacked.dispose();
+        }
+    }
+
+    static int pageNumber(FileHandle pageFile) {
+        String name = pageFile.nameWithoutExtension();
+        return Integer.parseInt(name.substring(name.lastIndexOf('_') + 1));
+    }
+
+}
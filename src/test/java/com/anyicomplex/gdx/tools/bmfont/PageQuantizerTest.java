@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Pixmap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link PageQuantizer} pages keep the texels exact in the quantized format and dither the others.
+ * @author Yi An
+ *
+ */
+class PageQuantizerTest extends HeadlessTestBase {
+
+    @Test
+    void quantizationKeepsExactTexels(@TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = ASCII;
+        config.borderWidth = 1;
+        config.borderColor = Color.NAVY;
+        config.shadowOffsetX = 1;
+        config.shadowOffsetY = 1;
+        FileHandle full = process(font(), new FileHandle(tempDir).child("full"), config);
+        config.pageQuantization = "rgba4444";
+        FileHandle quantized = process(font(), new FileHandle(tempDir).child("quantized"), config);
+        Pixmap fullPage = new Pixmap(full.child("DejaVuSans.png")), quantizedPage = new Pixmap(quantized.child("DejaVuSans.png"));
+        try {
+            int dithered = 0;
+            for (int y = 0; y < fullPage.getHeight(); y ++) {
+                for (int x = 0; x < fullPage.getWidth(); x ++) {
+                    int expected = fullPage.getPixel(x, y), actual = quantizedPage.getPixel(x, y);
+                    boolean exact = true;
+                    for (int shift = 0; shift < 32; shift += 8) {
+                        int expectedChannel = expected >>> shift & 0xFF, actualChannel = actual >>> shift & 0xFF;
+                        assertEquals(0, actualChannel % 17, "Not quantized at " + x + "," + y);
+                        assertTrue(Math.abs(expectedChannel - actualChannel) < 17, "Too far at " + x + "," + y);
+                        if (expectedChannel % 17 == 0) assertEquals(expectedChannel, actualChannel, "Exact value changed at " + x + "," + y);
+                        else exact = false;
+                    }
+                    // Transparent padding stays transparent, nothing bleeds into neighbour glyphs.
+                    if ((expected & 0xFF) == 0) assertEquals(0, actual & 0xFF);
+                    if (!exact) dithered ++;
+                }
+            }
+            assertTrue(dithered > 0);
+        }
+        finally {
+            fullPage.dispose();
+            quantizedPage.dispose();
+        }
+    }
+
+}
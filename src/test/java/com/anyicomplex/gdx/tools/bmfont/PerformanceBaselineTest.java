@@ -0,0 +1,129 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * <p>Records the time and the heap allocated by the processing thread for representative configurations into
+ * {@code build/reports/bmfont/performance.properties}, and compares them to {@code baseline/performance.properties}.</p>
+ * <p>Allocations must stay within 10% of the baseline. Timing depends on the machine, so it is only checked with
+ * {@code -Dbmfont.checkTiming=true}, against the baseline times {@code -Dbmfont.timingTolerance} (default 1.5).
+ * Together with {@link GoldenOutputTest} this shows an optimization pays off without changing the output.</p>
+ * @author Yi An
+ *
+ */
+class PerformanceBaselineTest extends HeadlessTestBase {
+
+    static final int WARMUP = 2;
+    static final int RUNS = 5;
+    static final String BASELINE = "baseline/performance.properties";
+
+    static final Properties results = new Properties();
+
+    static Stream<Arguments> configurations() {
+        return Stream.of(
+                Arguments.of("kerning-scripts", (Consumer<BitmapFontPacker.Configuration>) config -> {
+                    config.size = 32;
+                    config.characters = SCRIPTS;
+                }),
+                Arguments.of("border-latin", (Consumer<BitmapFontPacker.Configuration>) config -> {
+                    config.size = 32;
+                    config.borderWidth = 2;
+                    config.kerning = false;
+                })
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("configurations")
+    void withinBaseline(String name, Consumer<BitmapFontPacker.Configuration> configurer, @TempDir File tempDir) throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] millis = new long[RUNS];
+        long[] allocated = new long[RUNS];
+        for (int i = -WARMUP; i < RUNS; i ++) {
+            BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+            configurer.accept(config);
+            FileHandle outputDir = new FileHandle(tempDir).child("run" + i);
+            long allocatedBefore = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            long before = System.nanoTime();
+            assertEquals(BitmapFontPacker.ExitCode.SUCCESS, BitmapFontPacker.process(font(), outputDir, config));
+            long after = System.nanoTime();
+            long allocatedAfter = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+            if (i < 0) continue;
+            millis[i] = (after - before) / 1000000;
+            allocated[i] = allocatedAfter - allocatedBefore;
+        }
+        // Medians are stable against GC and JIT hiccups.
+        Arrays.sort(millis);
+        Arrays.sort(allocated);
+        long medianMillis = millis[RUNS / 2], medianAllocated = allocated[RUNS / 2];
+        synchronized (results) {
+            results.setProperty(name + ".millis", Long.toString(medianMillis));
+            results.setProperty(name + ".allocatedBytes", Long.toString(medianAllocated));
+        }
+        if (UPDATE) return;
+        FileHandle baselineFile = resource(BASELINE);
+        if (baselineFile == null) return;
+        Properties baseline = new Properties();
+        try (InputStream input = baselineFile.read()) {
+            baseline.load(input);
+        }
+        String baselineAllocated = baseline.getProperty(name + ".allocatedBytes");
+        if (baselineAllocated != null) {
+            long limit = Long.parseLong(baselineAllocated) * 11 / 10;
+            assertTrue(medianAllocated <= limit, name + " allocated " + medianAllocated + " bytes, baseline " + baselineAllocated);
+        }
+        String baselineMillis = baseline.getProperty(name + ".millis");
+        if (baselineMillis != null && Boolean.getBoolean("bmfont.checkTiming")) {
+            double tolerance = Double.parseDouble(System.getProperty("bmfont.timingTolerance", "1.5"));
+            assertTrue(medianMillis <= Long.parseLong(baselineMillis) * tolerance, name + " took " + medianMillis + " ms, baseline " + baselineMillis);
+        }
+    }
+
+    @AfterAll
+    static void writeResults() throws IOException {
+        FileHandle report = new FileHandle(new File(System.getProperty("user.dir"), "build/reports/bmfont/performance.properties"));
+        report.parent().mkdirs();
+        try (OutputStream output = report.write(false)) {
+            results.store(output, "Median of " + RUNS + " runs");
+        }
+        if (UPDATE) {
+            try (OutputStream output = sourceResource(BASELINE).write(false)) {
+                results.store(output, "Median of " + RUNS + " runs");
+            }
+        }
+    }
+
+}
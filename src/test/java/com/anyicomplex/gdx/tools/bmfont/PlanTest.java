@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks a {@link BitmapFontPacker.Plan} predicts the glyphs, pages and texture memory of the run it plans.
+ * @author Yi An
+ *
+ */
+class PlanTest extends HeadlessTestBase {
+
+    @Test
+    void planMatchesProcess(@TempDir File tempDir) {
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = SCRIPTS;
+        config.pageWidth = 128;
+        config.pageHeight = 128;
+        config.borderWidth = 1;
+        config.shadowOffsetX = 1;
+        config.shadowOffsetY = 1;
+        config.padLeft = 1;
+        BitmapFontPacker.Plan plan = BitmapFontPacker.plan(font(), config);
+        FileHandle outputDir = process(font(), new FileHandle(tempDir), config);
+        Map<Integer, String> metrics = glyphMetrics(outputDir.child("DejaVuSans.fnt"));
+        long texels = 0;
+        for (String glyph : metrics.values()) {
+            String[] fields = glyph.split(" ");
+            texels += Long.parseLong(fields[0].substring("width=".length())) * Long.parseLong(fields[1].substring("height=".length()));
+        }
+        int pages = outputDir.list(".png").length;
+        assertEquals(metrics.size(), plan.glyphs);
+        assertEquals(pages, plan.pages);
+        assertEquals(128, plan.pageWidth);
+        assertEquals(128, plan.pageHeight);
+        assertEquals((double) texels / (128 * 128 * pages), plan.occupancy, 0.05);
+        assertEquals(128 * 128 * 4L * pages, plan.textureBytes);
+        assertTrue(plan.pageFileBytes > 0 && plan.peakMemoryBytes > plan.textureBytes, plan.toString());
+    }
+
+}
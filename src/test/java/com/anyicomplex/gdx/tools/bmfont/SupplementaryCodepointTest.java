@@ -0,0 +1,58 @@
+/*
+ * Copyright 2022 Yi An
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.anyicomplex.gdx.tools.bmfont;
+
+import com.badlogic.gdx.files.FileHandle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks characters beyond the Basic Multilingual Plane are rendered and written, by single runs and merged shards.
+ * @author Yi An
+ *
+ */
+class SupplementaryCodepointTest extends HeadlessTestBase {
+
+    @Test
+    void supplementaryCodepointsAreWritten(@TempDir File tempDir) {
+        // Mathematical sans-serif capitals, the same outlines as the Latin capitals in DejaVu Sans but a serifed I.
+        StringBuilder sans = new StringBuilder();
+        for (int codepoint = 0x1D5A0; codepoint <= 0x1D5B9; codepoint ++) sans.appendCodePoint(codepoint);
+        BitmapFontPacker.Configuration config = new BitmapFontPacker.Configuration();
+        config.characters = BitmapFontPacker.Utils.removeDuplicateChars(ASCII + sans + ASCII + sans);
+        assertEquals(ASCII + sans, config.characters);
+        config.borderWidth = 1;
+        config.shadowOffsetX = 1;
+        config.shadowOffsetY = 1;
+        FileHandle single = process(font(), new FileHandle(tempDir).child("single"), config);
+        FileHandle merged = processShards(font(), new FileHandle(tempDir), config, 3);
+        validate(single.child("DejaVuSans.fnt"), false);
+        Map<Integer, String> expected = glyphMetrics(single.child("DejaVuSans.fnt"));
+        assertEquals(config.characters.codePointCount(0, config.characters.length()), expected.size());
+        for (int i = 0; i < 26; i ++) {
+            if ('A' + i == 'I') continue;
+            assertEquals(expected.get('A' + i), expected.get(0x1D5A0 + i), "Glyph " + Integer.toHexString(0x1D5A0 + i));
+        }
+        assertEquals(expected, glyphMetrics(merged.child("DejaVuSans.fnt")));
+    }
+
+}